@@ -11,13 +11,13 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
 
-import java.util.Arrays;
 import java.util.Date;
 
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Applicant {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper MAPPER = ObjectMapperProvider.getDefault().getObjectMapper();
 
     private String id;
     private String category;
@@ -97,7 +97,18 @@ public class Applicant {
 
     @JsonIgnore
     public void setAdditionalInfo(Object additionalInfo) throws JsonProcessingException {
-        setAdditionalInfo(MAPPER.writeValueAsString(additionalInfo));
+        if (additionalInfo == null) {
+            setAdditionalInfo(NullNode.getInstance());
+            return;
+        }
+        try {
+            setAdditionalInfo((JsonNode) MAPPER.valueToTree(additionalInfo));
+        } catch (IllegalArgumentException e) {
+            if (e.getCause() instanceof JsonProcessingException) {
+                throw (JsonProcessingException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     @JsonIgnore
@@ -120,7 +131,7 @@ public class Applicant {
                 ", category='" + category + '\'' +
                 ", mimetype='" + mimetype + '\'' +
                 ", state=" + state +
-                ", body=" + Arrays.toString(body) +
+                ", bodySize=" + (body == null ? "none" : body.length) +
                 ", timeOfCreation='" + timeOfCreation + '\'' +
                 ", timeOfLastModification='" + timeOfLastModification + '\'' +
                 ", additionalInfo=" + additionalInfo +
@@ -0,0 +1,100 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded least-recently-used cache of applicant bodies
+ * <p>
+ * Bodies are keyed on applicant id and time of last modification, so a
+ * modified applicant is never served a stale body. The cache is bounded by
+ * the total number of body bytes held.
+ * </p>
+ */
+public class ApplicantBodyCache {
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long currentBytes;
+
+    /**
+     * @param maxBytes maximum total size of cached bodies in bytes
+     */
+    public ApplicantBodyCache(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param id                     applicant id
+     * @param timeOfLastModification applicant time of last modification
+     * @return cached body or null if no body is cached for this version of the applicant
+     */
+    public synchronized byte[] get(String id, Date timeOfLastModification) {
+        final Entry entry = entries.get(id);
+        if (entry != null && entry.timeOfLastModification == timeOfLastModification.getTime()) {
+            hits.incrementAndGet();
+            return entry.body;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public synchronized void put(String id, Date timeOfLastModification, byte[] body) {
+        if (body.length > maxBytes) {
+            return;
+        }
+        final Entry previous = entries.put(id, new Entry(timeOfLastModification.getTime(), body));
+        if (previous != null) {
+            currentBytes -= previous.body.length;
+        }
+        currentBytes += body.length;
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().getValue().body.length;
+            iterator.remove();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeInBytes() {
+        return currentBytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry {
+        private final long timeOfLastModification;
+        private final byte[] body;
+
+        Entry(long timeOfLastModification, byte[] body) {
+            this.timeOfLastModification = timeOfLastModification;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dk.dbc.invariant.InvariantUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Index of the content last written for each applicant id, letting
+ * {@link LobbyConnector#createOrReplaceApplicant(Applicant)} skip writes of
+ * applicants unchanged since they were last written
+ * <p>
+ * For each applicant the index keeps a 64 bit hash of the id and a 64 bit
+ * fingerprint of category, mimetype, state, body and additional info, in two
+ * primitive arrays using 16 bytes per applicant at full load and no objects
+ * per entry. A hash collision between two ids can only cause a write to be
+ * skipped wrongly when the applicants also have the same content.
+ * </p>
+ * <p>
+ * The index only knows about writes made through connectors using it, so it
+ * must not be shared with writers that could change the applicants behind its
+ * back. It can be snapshotted to a file and read back, so that a re-harvest
+ * after a restart skips the applicants already written.
+ * </p>
+ * <pre>
+ *    ApplicantFingerprintIndex index = ApplicantFingerprintIndex.readSnapshot(Paths.get("/data/lobby.fingerprints"));
+ *    lobbyConnector.withFingerprintIndex(index);
+ *    ...
+ *    index.writeSnapshot(Paths.get("/data/lobby.fingerprints"));
+ * </pre>
+ */
+public class ApplicantFingerprintIndex {
+    private static final int SNAPSHOT_MAGIC = 0x4C4F4649;
+    // bumped whenever the fingerprint function changes, invalidating old snapshots
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MIN_CAPACITY = 16;
+    private static final long ID_SEED = 0x6C6F6262792D6964L;
+    private static final long CONTENT_SEED = 0x6C6F6262792D6670L;
+    private static final ObjectWriter ADDITIONAL_INFO_WRITER =
+            ObjectMapperProvider.getDefault().getObjectMapper().writer();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // open addressing with linear probing, a zero key marks an empty slot
+    private long[] keys;
+    private long[] fingerprints;
+    private int size;
+
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+
+    public ApplicantFingerprintIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedApplicants number of applicants the index can hold without growing
+     */
+    public ApplicantFingerprintIndex(int expectedApplicants) {
+        if (expectedApplicants < 0) {
+            throw new IllegalArgumentException("expectedApplicants must not be negative");
+        }
+        final int capacity = capacityFor(expectedApplicants);
+        keys = new long[capacity];
+        fingerprints = new long[capacity];
+    }
+
+    /**
+     * Reads an index from a snapshot written by {@link #writeSnapshot(Path)}
+     * @param snapshot snapshot file
+     * @return index read from the snapshot, or an empty index if the file
+     * does not exist or was written with another fingerprint function
+     * @throws LobbyConnectorException if the snapshot is unreadable or corrupt
+     */
+    public static ApplicantFingerprintIndex readSnapshot(Path snapshot) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(snapshot, "snapshot");
+        final CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot)), crc))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new LobbyConnectorException("Not a fingerprint snapshot " + snapshot);
+            }
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return new ApplicantFingerprintIndex();
+            }
+            final int count = in.readInt();
+            if (count < 0) {
+                throw new LobbyConnectorException("Corrupt fingerprint snapshot " + snapshot);
+            }
+            final ApplicantFingerprintIndex index = new ApplicantFingerprintIndex(count);
+            for (int i = 0; i < count; i++) {
+                final long key = in.readLong();
+                if (key == 0) {
+                    throw new LobbyConnectorException("Corrupt fingerprint snapshot " + snapshot);
+                }
+                index.putKey(key, in.readLong());
+            }
+            final long expectedCrc = crc.getValue();
+            if (in.readLong() != expectedCrc) {
+                throw new LobbyConnectorException("Corrupt fingerprint snapshot " + snapshot);
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return new ApplicantFingerprintIndex();
+        } catch (EOFException e) {
+            throw new LobbyConnectorException("Truncated fingerprint snapshot " + snapshot, e);
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to read fingerprint snapshot " + snapshot, e);
+        }
+    }
+
+    /**
+     * Writes the index to a snapshot file
+     * <p>
+     * The snapshot is written next to the file and moved into place, so an
+     * existing snapshot is replaced only by a complete one. Writes are held
+     * back while the index is copied.
+     * </p>
+     * @param snapshot snapshot file
+     * @throws LobbyConnectorException on failure to write the snapshot
+     */
+    public void writeSnapshot(Path snapshot) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(snapshot, "snapshot");
+        final long[] keysCopy;
+        final long[] fingerprintsCopy;
+        final int count;
+        lock.lock();
+        try {
+            keysCopy = keys.clone();
+            fingerprintsCopy = fingerprints.clone();
+            count = size;
+        } finally {
+            lock.unlock();
+        }
+        final Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            final CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)), new CRC32());
+            try (DataOutputStream out = new DataOutputStream(checked)) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(count);
+                for (int i = 0; i < keysCopy.length; i++) {
+                    if (keysCopy[i] != 0) {
+                        out.writeLong(keysCopy[i]);
+                        out.writeLong(fingerprintsCopy[i]);
+                    }
+                }
+                out.writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to write fingerprint snapshot " + snapshot, e);
+        }
+    }
+
+    /**
+     * Computes the fingerprint of the content of an applicant, that is of
+     * category, mimetype, state, body and additional info
+     * @param applicant applicant
+     * @return fingerprint
+     */
+    public static long fingerprint(Applicant applicant) {
+        InvariantUtil.checkNotNullOrThrow(applicant, "applicant");
+        long hash = CONTENT_SEED;
+        hash = Hash64.chars(applicant.getCategory(), hash);
+        hash = Hash64.chars(applicant.getMimetype(), hash);
+        hash = Hash64.chars(applicant.getState() == null ? null : applicant.getState().name(), hash);
+        hash = Hash64.bytes(applicant.getBody(), hash);
+        if (applicant.getAdditionalInfo() != null) {
+            try {
+                hash = Hash64.bytes(ADDITIONAL_INFO_WRITER.writeValueAsBytes(applicant.getAdditionalInfo()), hash);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            hash = Hash64.bytes(null, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * @param id          applicant id
+     * @param fingerprint fingerprint of the applicant about to be written
+     * @return true if the applicant was last written with the same fingerprint
+     */
+    public boolean isUnchanged(String id, long fingerprint) {
+        final long key = keyOf(id);
+        lock.lock();
+        try {
+            final int slot = slotOf(key);
+            return keys[slot] == key && fingerprints[slot] == fingerprint;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the fingerprint of an applicant just written
+     * @param id          applicant id
+     * @param fingerprint fingerprint of the written applicant
+     */
+    public void put(String id, long fingerprint) {
+        final long key = keyOf(id);
+        lock.lock();
+        try {
+            putKey(key, fingerprint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets an applicant, so that its next write is sent regardless of content
+     * @param id applicant id
+     */
+    public void remove(String id) {
+        final long key = keyOf(id);
+        lock.lock();
+        try {
+            int slot = slotOf(key);
+            if (keys[slot] != key) {
+                return;
+            }
+            // shifts following entries of the probe sequence back, so no tombstones are needed
+            final int mask = keys.length - 1;
+            int next = (slot + 1) & mask;
+            while (keys[next] != 0) {
+                final int home = (int) keys[next] & mask;
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    keys[slot] = keys[next];
+                    fingerprints[slot] = fingerprints[next];
+                    slot = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[slot] = 0;
+            fingerprints[slot] = 0;
+            size--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of applicants in the index
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return bytes held by the arrays of the index
+     */
+    public long getMemoryFootprint() {
+        lock.lock();
+        try {
+            return 2L * Long.BYTES * keys.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of writes skipped as unchanged
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return number of writes sent and recorded in the index
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    void skipped() {
+        skipped.incrementAndGet();
+    }
+
+    void sent(String id, long fingerprint) {
+        put(id, fingerprint);
+        sent.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicantFingerprintIndex{" +
+                "size=" + size() +
+                ", memoryFootprint=" + getMemoryFootprint() +
+                ", skipped=" + getSkipped() +
+                ", sent=" + getSent() +
+                '}';
+    }
+
+    private void putKey(long key, long fingerprint) {
+        int slot = slotOf(key);
+        if (keys[slot] == 0) {
+            if (size + 1 > keys.length / 4 * 3) {
+                resize(keys.length * 2);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        fingerprints[slot] = fingerprint;
+    }
+
+    /* Slot holding the key, or the empty slot where it belongs */
+    private int slotOf(long key) {
+        final int mask = keys.length - 1;
+        int slot = (int) key & mask;
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldFingerprints = fingerprints;
+        keys = new long[capacity];
+        fingerprints = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                final int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                fingerprints[slot] = oldFingerprints[i];
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedApplicants) {
+        final long needed = Math.max(MIN_CAPACITY, (long) expectedApplicants * 4 / 3 + 1);
+        if (needed > 1 << 30) {
+            throw new IllegalArgumentException("expectedApplicants too large: " + expectedApplicants);
+        }
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+
+    private static long keyOf(String id) {
+        InvariantUtil.checkNotNullNotEmptyOrThrow(id, "id");
+        final long key = Hash64.chars(id, ID_SEED);
+        return key == 0 ? 1 : key;
+    }
+
+    /* 64 bit hash following the single lane path of XXH64, reading eight bytes at a time */
+    static final class Hash64 {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+        private static final long NULL_HASH = 0x5DEECE66DL;
+        private static final VarHandle LONGS =
+                MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private Hash64() {}
+
+        static long bytes(byte[] bytes, long seed) {
+            if (bytes == null) {
+                return avalanche(seed ^ NULL_HASH);
+            }
+            long hash = seed + P5 + bytes.length;
+            int i = 0;
+            for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+                hash = mix(hash, (long) LONGS.get(bytes, i));
+            }
+            for (; i < bytes.length; i++) {
+                hash ^= (bytes[i] & 0xFFL) * P5;
+                hash = Long.rotateLeft(hash, 11) * P1;
+            }
+            return avalanche(hash);
+        }
+
+        static long chars(String chars, long seed) {
+            if (chars == null) {
+                return avalanche(seed ^ NULL_HASH);
+            }
+            final int length = chars.length();
+            long hash = seed + P5 + 2L * length;
+            int i = 0;
+            for (; i + 4 <= length; i += 4) {
+                hash = mix(hash, chars.charAt(i)
+                        | (long) chars.charAt(i + 1) << 16
+                        | (long) chars.charAt(i + 2) << 32
+                        | (long) chars.charAt(i + 3) << 48);
+            }
+            for (; i < length; i++) {
+                hash ^= chars.charAt(i) * P5;
+                hash = Long.rotateLeft(hash, 11) * P1;
+            }
+            return avalanche(hash);
+        }
+
+        private static long mix(long hash, long word) {
+            hash ^= Long.rotateLeft(word * P2, 31) * P1;
+            return Long.rotateLeft(hash, 27) * P1 + P4;
+        }
+
+        private static long avalanche(long hash) {
+            hash ^= hash >>> 33;
+            hash *= P2;
+            hash ^= hash >>> 29;
+            hash *= P3;
+            hash ^= hash >>> 32;
+            return hash;
+        }
+    }
+}
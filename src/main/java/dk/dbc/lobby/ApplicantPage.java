@@ -0,0 +1,39 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+/**
+ * Single page of an applicant listing
+ */
+public class ApplicantPage {
+    private final Applicant[] applicants;
+    private final String nextCursor;
+
+    ApplicantPage(Applicant[] applicants, String nextCursor) {
+        this.applicants = applicants;
+        this.nextCursor = nextCursor;
+    }
+
+    public Applicant[] getApplicants() {
+        return applicants;
+    }
+
+    /**
+     * @return cursor of the next page, or null if the lobby service
+     * does not use cursors or this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicantPage{" +
+                "applicants=" + applicants.length +
+                ", nextCursor='" + nextCursor + '\'' +
+                '}';
+    }
+}
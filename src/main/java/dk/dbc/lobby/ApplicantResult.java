@@ -0,0 +1,73 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+/**
+ * Outcome of a single applicant operation in a bulk request
+ */
+public class ApplicantResult {
+    public enum Outcome {
+        OK, GONE, UNPROCESSABLE_ENTITY, UNEXPECTED_STATUS, FAILED
+    }
+
+    private final String id;
+    private final Outcome outcome;
+    private final Exception exception;
+
+    private ApplicantResult(String id, Outcome outcome, Exception exception) {
+        this.id = id;
+        this.outcome = outcome;
+        this.exception = exception;
+    }
+
+    static ApplicantResult ok(String id) {
+        return new ApplicantResult(id, Outcome.OK, null);
+    }
+
+    static ApplicantResult failed(String id, Exception exception) {
+        final Outcome outcome;
+        if (exception instanceof LobbyConnectorGoneException) {
+            outcome = Outcome.GONE;
+        } else if (exception instanceof LobbyConnectorUnprocessableEntityException) {
+            outcome = Outcome.UNPROCESSABLE_ENTITY;
+        } else if (exception instanceof LobbyConnectorUnexpectedStatusCodeException) {
+            outcome = Outcome.UNEXPECTED_STATUS;
+        } else {
+            outcome = Outcome.FAILED;
+        }
+        return new ApplicantResult(id, outcome, exception);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isOk() {
+        return outcome == Outcome.OK;
+    }
+
+    /**
+     * @return the exception causing the operation to fail, or null on success.
+     * For all outcomes except {@link Outcome#FAILED} this is a
+     * {@link LobbyConnectorUnexpectedStatusCodeException} subtype.
+     */
+    public Exception getException() {
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicantResult{" +
+                "id='" + id + '\'' +
+                ", outcome=" + outcome +
+                ", exception=" + exception +
+                '}';
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Request entity writing an applicant as JSON with its body base64-encoded
+ * straight from a stream
+ * <p>
+ * Only a small constant buffer is used for the body, instead of holding the
+ * raw bytes, their base64 encoding and the serialized JSON in memory at once.
+ * Entities reading from a {@link Path} or a {@link ByteBuffer} can be written
+ * repeatedly, as needed when the request is retried. Entities reading from an
+ * {@link InputStream} can only be written once.
+ * </p>
+ */
+class ApplicantUploadEntity implements StreamingOutput {
+    private static final ObjectMapper MAPPER = ObjectMapperProvider.getDefault().getObjectMapper().copy()
+            .addMixIn(Applicant.class, WithoutBody.class);
+
+    @FunctionalInterface
+    private interface BodySource {
+        InputStream open() throws IOException;
+    }
+
+    private final ObjectNode applicant;
+    private final BodySource bodySource;
+    private final boolean replayable;
+    private final AtomicBoolean written = new AtomicBoolean();
+
+    private ApplicantUploadEntity(Applicant applicant, BodySource bodySource, boolean replayable) {
+        this.applicant = MAPPER.valueToTree(applicant);
+        this.bodySource = bodySource;
+        this.replayable = replayable;
+    }
+
+    static ApplicantUploadEntity of(Applicant applicant, Path body) {
+        return new ApplicantUploadEntity(applicant, () -> Files.newInputStream(body), true);
+    }
+
+    static ApplicantUploadEntity of(Applicant applicant, ByteBuffer body) {
+        return new ApplicantUploadEntity(applicant, () -> new ByteBufferInputStream(body.duplicate()), true);
+    }
+
+    static ApplicantUploadEntity of(Applicant applicant, InputStream body) {
+        return new ApplicantUploadEntity(applicant, () -> body, false);
+    }
+
+    boolean isReplayable() {
+        return replayable;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        if (written.getAndSet(true) && !replayable) {
+            throw new IOException("Applicant body input stream can not be uploaded more than once");
+        }
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(outputStream);
+             InputStream body = bodySource.open()) {
+            // The output stream belongs to the HTTP client
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            final Iterator<Map.Entry<String, JsonNode>> fields = applicant.fields();
+            while (fields.hasNext()) {
+                final Map.Entry<String, JsonNode> field = fields.next();
+                generator.writeFieldName(field.getKey());
+                generator.writeTree(field.getValue());
+            }
+            generator.writeFieldName("body");
+            generator.writeBinary(body, -1);
+            generator.writeEndObject();
+        }
+    }
+
+    private abstract static class WithoutBody {
+        @JsonIgnore
+        abstract byte[] getBody();
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Read-only, memory-lean representation of a listed applicant
+ * <p>
+ * Meant for holding large listings in memory: additional info is kept as
+ * compact Smile encoded bytes and only parsed into a tree when accessed,
+ * timestamps are kept as epoch millis, the body link is computed when
+ * asked for, and the low-cardinality category and mimetype strings are
+ * shared between instances. Use {@link #toApplicant()} to get a full
+ * {@link Applicant}.
+ * </p>
+ */
+@JsonDeserialize(using = ApplicantView.Deserializer.class)
+public class ApplicantView {
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private String id;
+    private String category;
+    private String mimetype;
+    private ApplicantState state;
+    private byte[] body;
+    private long timeOfCreation = NO_TIME;
+    private long timeOfLastModification = NO_TIME;
+    private byte[] additionalInfo;
+    private String bodyLinkPrefix;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getMimetype() {
+        return mimetype;
+    }
+
+    public ApplicantState getState() {
+        return state;
+    }
+
+    /**
+     * @return body, usually null since listings do not include bodies
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return time of creation in epoch millis, or {@link Long#MIN_VALUE} if unknown
+     */
+    public long getTimeOfCreationMillis() {
+        return timeOfCreation;
+    }
+
+    public Date getTimeOfCreation() {
+        return timeOfCreation == NO_TIME ? null : new Date(timeOfCreation);
+    }
+
+    /**
+     * @return time of last modification in epoch millis, or {@link Long#MIN_VALUE} if unknown
+     */
+    public long getTimeOfLastModificationMillis() {
+        return timeOfLastModification;
+    }
+
+    public Date getTimeOfLastModification() {
+        return timeOfLastModification == NO_TIME ? null : new Date(timeOfLastModification);
+    }
+
+    public boolean hasAdditionalInfo() {
+        return additionalInfo != null;
+    }
+
+    /**
+     * Parses the additional info, on each call
+     * @return additional info tree or null
+     */
+    public JsonNode getAdditionalInfo() {
+        if (additionalInfo == null) {
+            return null;
+        }
+        try {
+            return ObjectMapperProvider.getDefault().getObjectMapper(WireFormat.SMILE).readTree(additionalInfo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getBodyLink() {
+        return bodyLinkPrefix == null || id == null ? null : bodyLinkPrefix + id + LobbyConnector.BODY_LINK_SUFFIX;
+    }
+
+    void setBodyLinkPrefix(String bodyLinkPrefix) {
+        this.bodyLinkPrefix = bodyLinkPrefix;
+    }
+
+    /**
+     * @return new full applicant with the values of this view
+     */
+    public Applicant toApplicant() {
+        final Applicant applicant = new Applicant();
+        applicant.setId(id);
+        applicant.setCategory(category);
+        applicant.setMimetype(mimetype);
+        applicant.setState(state);
+        applicant.setBody(body);
+        applicant.setTimeOfCreation(getTimeOfCreation());
+        applicant.setTimeOfLastModification(getTimeOfLastModification());
+        applicant.setAdditionalInfo(getAdditionalInfo());
+        applicant.setBodyLink(getBodyLink());
+        return applicant;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplicantView{" +
+                "id='" + id + '\'' +
+                ", category='" + category + '\'' +
+                ", mimetype='" + mimetype + '\'' +
+                ", state=" + state +
+                ", bodySize=" + (body == null ? "none" : body.length) +
+                ", timeOfCreation=" + timeOfCreation +
+                ", timeOfLastModification=" + timeOfLastModification +
+                ", additionalInfoSize=" + (additionalInfo == null ? "none" : additionalInfo.length) +
+                '}';
+    }
+
+    static class Deserializer extends StdDeserializer<ApplicantView> {
+        // Bounded, as the values come from the lobby service
+        private static final int MAX_SHARED_VALUES = 1024;
+        private static final ConcurrentMap<String, String> SHARED_VALUES = new ConcurrentHashMap<>();
+
+        Deserializer() {
+            super(ApplicantView.class);
+        }
+
+        @Override
+        public ApplicantView deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonToken token = parser.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = parser.nextToken();
+            }
+            final ApplicantView view = new ApplicantView();
+            for (; token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                final String field = parser.getCurrentName();
+                token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        view.id = parser.getValueAsString();
+                        break;
+                    case "category":
+                        view.category = share(parser.getValueAsString());
+                        break;
+                    case "mimetype":
+                        view.mimetype = share(parser.getValueAsString());
+                        break;
+                    case "state":
+                        view.state = token == JsonToken.VALUE_NULL
+                                ? null : ApplicantState.valueOf(parser.getValueAsString());
+                        break;
+                    case "body":
+                        view.body = token == JsonToken.VALUE_NULL ? null : parser.getBinaryValue();
+                        break;
+                    case "timeOfCreation":
+                        view.timeOfCreation = readTime(parser, context);
+                        break;
+                    case "timeOfLastModification":
+                        view.timeOfLastModification = readTime(parser, context);
+                        break;
+                    case "additionalInfo":
+                        view.additionalInfo = token == JsonToken.VALUE_NULL ? null : toSmile(parser);
+                        break;
+                    default:
+                        // bodyLink is computed, anything else is unknown
+                        parser.skipChildren();
+                }
+            }
+            return view;
+        }
+
+        private static String share(String value) {
+            if (value == null) {
+                return null;
+            }
+            final String shared = SHARED_VALUES.get(value);
+            if (shared != null) {
+                return shared;
+            }
+            if (SHARED_VALUES.size() >= MAX_SHARED_VALUES) {
+                return value;
+            }
+            final String previous = SHARED_VALUES.putIfAbsent(value, value);
+            return previous == null ? value : previous;
+        }
+
+        private static long readTime(JsonParser parser, DeserializationContext context) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_NULL:
+                    return NO_TIME;
+                case VALUE_STRING:
+                    return context.parseDate(parser.getText()).getTime();
+                default:
+                    return parser.getLongValue();
+            }
+        }
+
+        private static byte[] toSmile(JsonParser parser) throws IOException {
+            final ByteArrayBuilder bytes = new ByteArrayBuilder(128);
+            try (JsonGenerator generator = ObjectMapperProvider.getDefault().getObjectMapper(WireFormat.SMILE)
+                    .getFactory().createGenerator(bytes)) {
+                generator.copyCurrentStructure(parser);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
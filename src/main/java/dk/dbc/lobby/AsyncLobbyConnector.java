@@ -0,0 +1,412 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.InvocationCallback;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import net.jodah.failsafe.CircuitBreakerOpenException;
+import net.jodah.failsafe.FailsafeExecutor;
+import net.jodah.failsafe.RetryPolicy;
+import net.jodah.failsafe.function.CheckedSupplier;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking variant of {@link LobbyConnector}
+ * <p>
+ * All operations return immediately with a {@link CompletableFuture}. Requests
+ * are issued through the JAX-RS async invoker and retries are scheduled on a
+ * {@link ScheduledExecutorService} instead of sleeping the calling thread, so
+ * a large number of lobby operations can be kept in flight using few threads.
+ * </p>
+ * <p>
+ * Futures complete exceptionally with the same {@link LobbyConnectorException}
+ * subtypes thrown by the blocking connector, available as the cause of the
+ * {@link java.util.concurrent.ExecutionException} or {@link CompletionException}
+ * thrown when retrieving the result.
+ * </p>
+ * <p>
+ * Only retry, retry budget and circuit breaker settings carry over from the
+ * blocking connector. Listings are always requested as JSON and read by the
+ * Jackson provider registered on the client, and there is no counterpart of
+ * {@link LobbyConnector#withWireFormat(WireFormat)},
+ * {@link LobbyConnector#withObjectMapperProvider(ObjectMapperProvider)},
+ * {@link LobbyConnector#withRequestLimiter(RequestLimiter)} or
+ * {@link LobbyConnector#withRequestCoalescer(RequestCoalescer)}: waiting for
+ * a limiter permit or for a coalesced listing would block the calling thread.
+ * </p>
+ */
+public class AsyncLobbyConnector {
+    private final Client client;
+    private final WebTarget applicantsTarget;
+    private final WebTarget applicantTarget;
+    private final String bodyLinkPrefix;
+    // Only set when the retry policy was built from a RetryConfig
+    private final RetryBudget retryBudget;
+    private final Supplier<FailsafeExecutor<Response>> failsafe;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final LobbyConnector.TimingLogLevel level;
+    private final LobbyConnector.LogLevelMethod logger;
+    private final LobbyConnectorMetrics metrics;
+    private boolean multiValuedQueries;
+    private int fanOutConcurrency = LobbyConnector.DEFAULT_BULK_CONCURRENCY;
+
+    /**
+     * Returns new instance with default retry configuration
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for lobby service endpoint
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl) {
+        this(httpClient, baseUrl, LobbyConnector.TimingLogLevel.INFO);
+    }
+
+    /**
+     * Returns new instance with default retry configuration
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for lobby service endpoint
+     * @param level      timings log level
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level) {
+        this(httpClient, baseUrl, level, LobbyConnectorMetrics.NOOP);
+    }
+
+    /**
+     * Returns new instance with default retry configuration, reporting to the given metrics
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for lobby service endpoint
+     * @param level      timings log level
+     * @param metrics    metrics receiving timings, outcomes and retries
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                               LobbyConnectorMetrics metrics) {
+        this(httpClient, baseUrl, level, metrics, new RetryConfig());
+    }
+
+    /**
+     * Returns new instance with custom retry configuration
+     * <p>
+     * Retries are limited by a retry budget and, if enabled, a circuit breaker
+     * exactly as for the blocking connector.
+     * </p>
+     *
+     * @param httpClient  web resources client
+     * @param baseUrl     base URL for lobby service endpoint
+     * @param level       timings log level
+     * @param retryConfig retry, retry budget and circuit breaker settings
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                               RetryConfig retryConfig) {
+        this(httpClient, baseUrl, level, LobbyConnectorMetrics.NOOP, retryConfig);
+    }
+
+    /**
+     * Returns new instance with custom retry configuration, reporting to the given metrics
+     *
+     * @param httpClient  web resources client
+     * @param baseUrl     base URL for lobby service endpoint
+     * @param level       timings log level
+     * @param metrics     metrics receiving timings, outcomes, retries and circuit breaker state
+     * @param retryConfig retry, retry budget and circuit breaker settings
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                               LobbyConnectorMetrics metrics, RetryConfig retryConfig) {
+        this(httpClient, baseUrl, level, InvariantUtil.checkNotNullOrThrow(metrics, "metrics"),
+                newRetryBudget(retryConfig, metrics), retryConfig);
+    }
+
+    private AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                                LobbyConnectorMetrics metrics, RetryBudget retryBudget, RetryConfig retryConfig) {
+        this(httpClient, baseUrl, level, metrics, retryBudget,
+                LobbyConnector.newFailsafe(retryConfig, retryBudget, metrics), newScheduler(), true);
+    }
+
+    /**
+     * Returns new instance with custom retry policy
+     *
+     * @param httpClient  web resources client
+     * @param baseUrl     base URL for lobby service endpoint
+     * @param level       timings log level
+     * @param retryPolicy retry policy
+     * @param scheduler   executor on which retries are scheduled,
+     *                    not shut down by {@link #close()}
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                               RetryPolicy<Response> retryPolicy, ScheduledExecutorService scheduler) {
+        this(httpClient, baseUrl, level, LobbyConnectorMetrics.NOOP, retryPolicy, scheduler);
+    }
+
+    /**
+     * Returns new instance with custom retry policy, reporting to the given metrics
+     * <p>
+     * Retries are only reported if the retry policy was created by
+     * {@link LobbyConnector#newRetryPolicy(LobbyConnectorMetrics)}.
+     * </p>
+     *
+     * @param httpClient  web resources client
+     * @param baseUrl     base URL for lobby service endpoint
+     * @param level       timings log level
+     * @param metrics     metrics receiving timings and outcomes
+     * @param retryPolicy retry policy
+     * @param scheduler   executor on which retries are scheduled,
+     *                    not shut down by {@link #close()}
+     */
+    public AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                               LobbyConnectorMetrics metrics, RetryPolicy<Response> retryPolicy,
+                               ScheduledExecutorService scheduler) {
+        this(httpClient, baseUrl, level, metrics, null,
+                LobbyConnector.newFailsafe(InvariantUtil.checkNotNullOrThrow(retryPolicy, "retryPolicy")),
+                scheduler, false);
+    }
+
+    private AsyncLobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                                LobbyConnectorMetrics metrics, RetryBudget retryBudget,
+                                Supplier<FailsafeExecutor<Response>> failsafe, ScheduledExecutorService scheduler,
+                                boolean ownsScheduler) {
+        this.client = InvariantUtil.checkNotNullOrThrow(httpClient, "httpClient");
+        InvariantUtil.checkNotNullNotEmptyOrThrow(baseUrl, "baseUrl");
+        this.applicantsTarget = client.target(baseUrl).path(LobbyConnector.PATH_GET_APPLICANTS);
+        this.applicantTarget = client.target(baseUrl).path(LobbyConnector.PATH_CREATE_OR_REPLACE_APPLICANT);
+        this.bodyLinkPrefix = baseUrl + LobbyConnector.PATH_GET_APPLICANTS + "/";
+        this.scheduler = InvariantUtil.checkNotNullOrThrow(scheduler, "scheduler");
+        this.retryBudget = retryBudget;
+        this.failsafe = () -> failsafe.get().with(scheduler);
+        this.ownsScheduler = ownsScheduler;
+        this.level = level;
+        this.logger = LobbyConnector.logLevelMethod(level);
+        this.metrics = InvariantUtil.checkNotNullOrThrow(metrics, "metrics");
+    }
+
+    /**
+     * Makes params with several categories or states be sent as a single
+     * listing request repeating the query params, for lobby services
+     * supporting this
+     * @param multiValuedQueries true to send multi-valued params in one request
+     * @return this connector
+     * @see LobbyConnector#withMultiValuedQueries(boolean)
+     */
+    public AsyncLobbyConnector withMultiValuedQueries(boolean multiValuedQueries) {
+        this.multiValuedQueries = multiValuedQueries;
+        return this;
+    }
+
+    public boolean isMultiValuedQueries() {
+        return multiValuedQueries;
+    }
+
+    /**
+     * Sets the maximum number of concurrent listing requests when fanning out
+     * params with several categories or states, 8 by default
+     * @param fanOutConcurrency maximum number of listing requests in flight
+     * @return this connector
+     */
+    public AsyncLobbyConnector withFanOutConcurrency(int fanOutConcurrency) {
+        if (fanOutConcurrency < 1) {
+            throw new IllegalArgumentException("fanOutConcurrency must be positive");
+        }
+        this.fanOutConcurrency = fanOutConcurrency;
+        return this;
+    }
+
+    public int getFanOutConcurrency() {
+        return fanOutConcurrency;
+    }
+
+    /**
+     * Returns applicants matching the given params
+     * <p>
+     * Params with several categories or states are fanned out into listings
+     * of each combination, at most {@link #getFanOutConcurrency()} at a time,
+     * unless multi-valued queries are enabled. The merged listing holds each
+     * applicant once, and fails as soon as one of the listings fails.
+     * </p>
+     * @param params query parameters
+     * @return future applicants with body links
+     * @see #withMultiValuedQueries(boolean)
+     */
+    public CompletableFuture<Applicant[]> getApplicantsAsync(LobbyConnector.Params params) {
+        if (params != null && !multiValuedQueries && params.isMultiValued()) {
+            return new FanOut(params.combinations()).start();
+        }
+        final LobbyConnector.RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.GET_APPLICANTS);
+        final WebTarget listTarget = LobbyConnector.withQueryParams(applicantsTarget, params);
+        return timed(timer, execute(() -> invoke(listTarget, null))
+                .thenApply(response -> {
+                    try {
+                        LobbyConnector.assertResponseStatus(response, Response.Status.OK);
+                        if (response.getLength() >= 0) {
+                            metrics.responseSize(LobbyConnectorMetrics.Operation.GET_APPLICANTS,
+                                    response.getLength());
+                        }
+                        final Applicant[] applicants =
+                                LobbyConnector.readResponseEntity(response, Applicant[].class);
+                        metrics.applicantsListed(LobbyConnectorMetrics.Operation.GET_APPLICANTS, applicants.length);
+                        for (Applicant applicant : applicants) {
+                            applicant.setBodyLink(
+                                    bodyLinkPrefix + applicant.getId() + LobbyConnector.BODY_LINK_SUFFIX);
+                        }
+                        return applicants;
+                    } catch (LobbyConnectorException e) {
+                        throw new CompletionException(e);
+                    }
+                }));
+    }
+
+    public CompletableFuture<Void> createOrReplaceApplicantAsync(Applicant applicant) {
+        final LobbyConnector.RequestTimer timer =
+                startTimer(LobbyConnectorMetrics.Operation.CREATE_OR_REPLACE_APPLICANT);
+        final WebTarget target = applicantTarget.resolveTemplate("id", applicant.getId());
+        final Entity<Applicant> entity = Entity.entity(applicant, MediaType.APPLICATION_JSON);
+        return timed(timer, execute(() -> invoke(target, entity))
+                .thenAccept(response -> {
+                    try {
+                        LobbyConnector.assertResponseStatus(response, Response.Status.CREATED, Response.Status.OK);
+                        response.close();
+                    } catch (LobbyConnectorException e) {
+                        throw new CompletionException(e);
+                    }
+                }));
+    }
+
+    public void close() {
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+        client.close();
+    }
+
+    private CompletableFuture<Response> execute(CheckedSupplier<CompletableFuture<Response>> request) {
+        if (retryBudget != null) {
+            retryBudget.deposit();
+        }
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        failsafe.get().getStageAsync(request).whenComplete((response, failure) -> {
+            if (failure == null) {
+                future.complete(response);
+            } else if (failure instanceof CircuitBreakerOpenException
+                    || failure.getCause() instanceof CircuitBreakerOpenException) {
+                future.completeExceptionally(
+                        new ProcessingException("Lobby service circuit breaker is open", failure));
+            } else {
+                future.completeExceptionally(failure);
+            }
+        });
+        return future;
+    }
+
+    /* Starts the listing of the next combination whenever one completes, so
+       that no more than fanOutConcurrency listings are in flight without
+       blocking any thread */
+    private final class FanOut {
+        private final List<LobbyConnector.Params> combinations;
+        private final Applicant[][] listings;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Applicant[]> merged = new CompletableFuture<>();
+
+        private FanOut(List<LobbyConnector.Params> combinations) {
+            this.combinations = combinations;
+            this.listings = new Applicant[combinations.size()][];
+            this.remaining = new AtomicInteger(combinations.size());
+        }
+
+        CompletableFuture<Applicant[]> start() {
+            for (int i = 0; i < Math.min(fanOutConcurrency, combinations.size()); i++) {
+                startNext();
+            }
+            return merged;
+        }
+
+        private void startNext() {
+            final int index = next.getAndIncrement();
+            if (index >= combinations.size() || merged.isDone()) {
+                return;
+            }
+            getApplicantsAsync(combinations.get(index)).whenComplete((applicants, failure) -> {
+                if (failure != null) {
+                    merged.completeExceptionally(failure);
+                    return;
+                }
+                listings[index] = applicants;
+                if (remaining.decrementAndGet() == 0) {
+                    merged.complete(LobbyConnector.mergeDistinct(Arrays.asList(listings)));
+                } else {
+                    startNext();
+                }
+            });
+        }
+    }
+
+    private LobbyConnector.RequestTimer startTimer(LobbyConnectorMetrics.Operation operation) {
+        return LobbyConnector.RequestTimer.start(operation, metrics, level, logger);
+    }
+
+    /* Stops the timer once the future completes, recording the outcome
+       from the LobbyConnectorException or ProcessingException it failed with */
+    private static <T> CompletableFuture<T> timed(LobbyConnector.RequestTimer timer, CompletableFuture<T> future) {
+        return future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                timer.failed(failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure);
+            }
+            timer.stop();
+        });
+    }
+
+    private static RetryBudget newRetryBudget(RetryConfig retryConfig, LobbyConnectorMetrics metrics) {
+        InvariantUtil.checkNotNullOrThrow(retryConfig, "retryConfig");
+        final RetryBudget retryBudget = new RetryBudget(retryConfig.getRetryBudgetRatio(),
+                retryConfig.getRetryBudgetReserve());
+        metrics.retryBudget(retryBudget);
+        return retryBudget;
+    }
+
+    private static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "lobby-connector-retry-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /* Issues a GET when entity is null, otherwise a PUT */
+    private CompletableFuture<Response> invoke(WebTarget target, Entity<?> entity) {
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+        final InvocationCallback<Response> callback = new InvocationCallback<Response>() {
+            @Override
+            public void completed(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void failed(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        };
+        if (entity == null) {
+            target.request(MediaType.APPLICATION_JSON).async().get(callback);
+        } else {
+            target.request().async().put(entity, callback);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import jakarta.ws.rs.core.Feature;
+import jakarta.ws.rs.core.FeatureContext;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.filter.EncodingFilter;
+import org.glassfish.jersey.message.DeflateEncoder;
+import org.glassfish.jersey.message.GZipEncoder;
+
+/**
+ * Client feature enabling HTTP compression
+ * <p>
+ * Responses are requested gzip or deflate encoded and transparently
+ * decoded. Request entities are only gzip encoded if enabled, since
+ * not all servers accept compressed requests.
+ * </p>
+ * <pre>
+ *    Client client = HttpClient.newClient(new ClientConfig()
+ *            .register(new JacksonFeature())
+ *            .register(new CompressionFeature()));
+ * </pre>
+ */
+public class CompressionFeature implements Feature {
+    private final boolean compressRequests;
+
+    /**
+     * Enables compression of responses only
+     */
+    public CompressionFeature() {
+        this(false);
+    }
+
+    /**
+     * @param compressRequests whether to also gzip encode request entities
+     */
+    public CompressionFeature(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        context.register(EncodingFilter.class);
+        context.register(GZipEncoder.class);
+        context.register(DeflateEncoder.class);
+        if (compressRequests) {
+            context.property(ClientProperties.USE_ENCODING, "gzip");
+        }
+        return true;
+    }
+}
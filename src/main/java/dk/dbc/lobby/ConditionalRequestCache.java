@@ -0,0 +1,103 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of applicant listings used for conditional GET requests
+ * <p>
+ * For each distinct set of {@link LobbyConnector.Params} the last listing is
+ * kept together with the ETag and Last-Modified validators returned by the
+ * lobby service. Subsequent requests for the same params send these as
+ * If-None-Match and If-Modified-Since, and a 304 Not Modified response is
+ * answered from the cache without transferring or parsing the listing.
+ * </p>
+ */
+public class ConditionalRequestCache {
+    private final Map<Map<String, Object>, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong applicantsFromCache = new AtomicLong();
+
+    Entry get(LobbyConnector.Params params) {
+        return entries.get(keyOf(params));
+    }
+
+    void put(LobbyConnector.Params params, String eTag, String lastModified, Applicant[] applicants) {
+        if (eTag == null && lastModified == null) {
+            entries.remove(keyOf(params));
+        } else {
+            entries.put(keyOf(params), new Entry(eTag, lastModified, applicants));
+        }
+    }
+
+    void hit(Entry entry) {
+        hits.incrementAndGet();
+        applicantsFromCache.addAndGet(entry.applicants.length);
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return number of listings answered by 304 Not Modified
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of listings transferred in full
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return total number of applicants served from the cache instead
+     * of being transferred and deserialized
+     */
+    public long getApplicantsFromCache() {
+        return applicantsFromCache.get();
+    }
+
+    private static Map<String, Object> keyOf(LobbyConnector.Params params) {
+        return params == null ? Map.of() : new HashMap<>(params);
+    }
+
+    static class Entry {
+        private final String eTag;
+        private final String lastModified;
+        private final Applicant[] applicants;
+
+        Entry(String eTag, String lastModified, Applicant[] applicants) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.applicants = applicants;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        String getLastModified() {
+            return lastModified;
+        }
+
+        Applicant[] getApplicants() {
+            return applicants;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.time.Duration;
+
+/**
+ * HTTP connection pool settings for connectors created by
+ * {@link LobbyConnectorFactory#create(String, LobbyConnector.TimingLogLevel, LobbyConnectorMetrics, ConnectionPoolConfig)}
+ */
+public class ConnectionPoolConfig {
+    private int maxConnections = 50;
+    private int maxConnectionsPerRoute = 20;
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    private Duration readTimeout = Duration.ofMinutes(5);
+    private Duration idleTimeout = Duration.ofSeconds(30);
+    private Duration timeToLive = Duration.ofMinutes(5);
+    private Duration leaseTimeout = Duration.ofSeconds(30);
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @param maxConnections maximum number of pooled connections in total (default 50)
+     * @return this config
+     */
+    public ConnectionPoolConfig withMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * @param maxConnectionsPerRoute maximum number of pooled connections per host (default 20)
+     * @return this config
+     */
+    public ConnectionPoolConfig withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param connectTimeout timeout for establishing a connection (default 10 seconds)
+     * @return this config
+     */
+    public ConnectionPoolConfig withConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * @param readTimeout maximum time of inactivity while waiting for data (default 5 minutes)
+     * @return this config
+     */
+    public ConnectionPoolConfig withReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout time after which idle pooled connections are evicted (default 30 seconds)
+     * @return this config
+     */
+    public ConnectionPoolConfig withIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @param timeToLive maximum lifetime of a kept-alive connection (default 5 minutes)
+     * @return this config
+     */
+    public ConnectionPoolConfig withTimeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    public Duration getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    /**
+     * @param leaseTimeout maximum time to wait for a pooled connection when
+     *                     all are in use (default 30 seconds)
+     * @return this config
+     */
+    public ConnectionPoolConfig withLeaseTimeout(Duration leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolConfig{" +
+                "maxConnections=" + maxConnections +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", connectTimeout=" + connectTimeout +
+                ", readTimeout=" + readTimeout +
+                ", idleTimeout=" + idleTimeout +
+                ", timeToLive=" + timeToLive +
+                ", leaseTimeout=" + leaseTimeout +
+                '}';
+    }
+}
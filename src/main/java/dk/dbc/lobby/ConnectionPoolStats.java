@@ -0,0 +1,31 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+/**
+ * Live view of the HTTP connection pool of a connector
+ */
+public interface ConnectionPoolStats {
+    /**
+     * @return number of connections currently in use
+     */
+    int getLeased();
+
+    /**
+     * @return number of idle connections kept alive
+     */
+    int getAvailable();
+
+    /**
+     * @return number of requests waiting for a connection
+     */
+    int getPending();
+
+    /**
+     * @return maximum number of connections
+     */
+    int getMax();
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link LobbyConnectorMetrics} implementation
+ * <p>
+ * Keeps a latency histogram (in nanoseconds) per operation and outcome,
+ * histograms of response sizes and listing sizes per operation, a retry
+ * counter and in-flight request counts. All histograms are preallocated,
+ * so recording does not allocate.
+ * </p>
+ */
+public class DefaultLobbyConnectorMetrics implements LobbyConnectorMetrics {
+    private final Map<Operation, Map<Outcome, Histogram>> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> responseSizes = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> applicantCounts = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> inFlight = new EnumMap<>(Operation.class);
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder retryBudgetExhaustions = new LongAdder();
+    private final LongAdder circuitBreakerOpenings = new LongAdder();
+    private final Histogram limiterWaits = new Histogram();
+    private final LongAdder limiterRejections = new LongAdder();
+    private final LongAdder collapsedWrites = new LongAdder();
+    private final LongAdder skippedWrites = new LongAdder();
+    private volatile CircuitBreakerState circuitBreakerState = CircuitBreakerState.CLOSED;
+    private volatile RetryBudget retryBudget;
+    private volatile ConnectionPoolStats connectionPoolStats;
+    private volatile RequestLimiter requestLimiter;
+    private volatile ApplicantFingerprintIndex fingerprintIndex;
+
+    public DefaultLobbyConnectorMetrics() {
+        for (Operation operation : Operation.values()) {
+            final Map<Outcome, Histogram> byOutcome = new EnumMap<>(Outcome.class);
+            for (Outcome outcome : Outcome.values()) {
+                byOutcome.put(outcome, new Histogram());
+            }
+            latencies.put(operation, byOutcome);
+            responseSizes.put(operation, new Histogram());
+            applicantCounts.put(operation, new Histogram());
+            inFlight.put(operation, new LongAdder());
+        }
+    }
+
+    @Override
+    public void requestStarted(Operation operation) {
+        inFlight.get(operation).increment();
+    }
+
+    @Override
+    public void requestCompleted(Operation operation, Outcome outcome, long durationNanos) {
+        inFlight.get(operation).decrement();
+        latencies.get(operation).get(outcome).record(durationNanos);
+    }
+
+    @Override
+    public void retried() {
+        retries.increment();
+    }
+
+    @Override
+    public void retryBudgetExhausted() {
+        retryBudgetExhaustions.increment();
+    }
+
+    @Override
+    public void retryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public void circuitBreakerStateChanged(CircuitBreakerState state) {
+        if (state == CircuitBreakerState.OPEN) {
+            circuitBreakerOpenings.increment();
+        }
+        circuitBreakerState = state;
+    }
+
+    @Override
+    public void requestLimiter(RequestLimiter requestLimiter) {
+        this.requestLimiter = requestLimiter;
+    }
+
+    @Override
+    public void limiterWaited(long waitNanos) {
+        limiterWaits.record(waitNanos);
+    }
+
+    @Override
+    public void limiterRejected() {
+        limiterRejections.increment();
+    }
+
+    @Override
+    public void applicantWritesCollapsed(int count) {
+        collapsedWrites.add(count);
+    }
+
+    @Override
+    public void fingerprintIndex(ApplicantFingerprintIndex fingerprintIndex) {
+        this.fingerprintIndex = fingerprintIndex;
+    }
+
+    @Override
+    public void applicantWritesSkipped(int count) {
+        skippedWrites.add(count);
+    }
+
+    @Override
+    public void responseSize(Operation operation, long bytes) {
+        responseSizes.get(operation).record(bytes);
+    }
+
+    @Override
+    public void applicantsListed(Operation operation, int count) {
+        applicantCounts.get(operation).record(count);
+    }
+
+    @Override
+    public void connectionPool(ConnectionPoolStats stats) {
+        connectionPoolStats = stats;
+    }
+
+    /**
+     * @param operation connector operation
+     * @param outcome   operation outcome
+     * @return latency histogram in nanoseconds
+     */
+    public Histogram getLatency(Operation operation, Outcome outcome) {
+        return latencies.get(operation).get(outcome);
+    }
+
+    /**
+     * @param operation connector operation
+     * @return histogram of response sizes in bytes, for responses with known length
+     */
+    public Histogram getResponseSizes(Operation operation) {
+        return responseSizes.get(operation);
+    }
+
+    /**
+     * @param operation connector operation
+     * @return histogram of number of applicants per listing
+     */
+    public Histogram getApplicantCounts(Operation operation) {
+        return applicantCounts.get(operation);
+    }
+
+    public long getInFlight(Operation operation) {
+        return inFlight.get(operation).sum();
+    }
+
+    public long getInFlight() {
+        long total = 0;
+        for (LongAdder adder : inFlight.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * @return number of retries abandoned because the retry budget was exhausted
+     */
+    public long getRetryBudgetExhaustions() {
+        return retryBudgetExhaustions.sum();
+    }
+
+    /**
+     * @return number of retries currently available in the retry budget, if the connector uses one
+     */
+    public Optional<Double> getRetryBudgetAvailable() {
+        return Optional.ofNullable(retryBudget).map(RetryBudget::getAvailable);
+    }
+
+    public CircuitBreakerState getCircuitBreakerState() {
+        return circuitBreakerState;
+    }
+
+    /**
+     * @return number of times the circuit breaker has opened
+     */
+    public long getCircuitBreakerOpenings() {
+        return circuitBreakerOpenings.sum();
+    }
+
+    /**
+     * @return histogram of time in nanoseconds spent waiting for the request limiter
+     */
+    public Histogram getLimiterWaits() {
+        return limiterWaits;
+    }
+
+    /**
+     * @return number of request attempts rejected by the request limiter
+     */
+    public long getLimiterRejections() {
+        return limiterRejections.sum();
+    }
+
+    /**
+     * @return number of applicant writes collapsed by write coalescing buffers
+     */
+    public long getCollapsedWrites() {
+        return collapsedWrites.sum();
+    }
+
+    /**
+     * @return number of applicant writes skipped as unchanged by a fingerprint index
+     */
+    public long getSkippedWrites() {
+        return skippedWrites.sum();
+    }
+
+    /**
+     * @return bytes held by the fingerprint index, if the connector uses one
+     */
+    public Optional<Long> getFingerprintIndexMemoryFootprint() {
+        return Optional.ofNullable(fingerprintIndex).map(ApplicantFingerprintIndex::getMemoryFootprint);
+    }
+
+    /**
+     * @return current concurrency limit of the request limiter, if the
+     * connector uses one with adaptive concurrency
+     */
+    public Optional<Integer> getConcurrencyLimit() {
+        return Optional.ofNullable(requestLimiter)
+                .map(RequestLimiter::getConcurrencyLimit)
+                .filter(limit -> limit > 0);
+    }
+
+    /**
+     * @return live view of the connection pool, if the connector uses one
+     */
+    public Optional<ConnectionPoolStats> getConnectionPoolStats() {
+        return Optional.ofNullable(connectionPoolStats);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("DefaultLobbyConnectorMetrics{");
+        for (Map.Entry<Operation, Map<Outcome, Histogram>> byOperation : latencies.entrySet()) {
+            for (Map.Entry<Outcome, Histogram> byOutcome : byOperation.getValue().entrySet()) {
+                if (byOutcome.getValue().getCount() > 0) {
+                    builder.append(byOperation.getKey()).append('.').append(byOutcome.getKey())
+                            .append('=').append(byOutcome.getValue()).append(", ");
+                }
+            }
+        }
+        builder.append("retries=").append(getRetries())
+                .append(", retryBudgetExhaustions=").append(getRetryBudgetExhaustions())
+                .append(", circuitBreakerState=").append(circuitBreakerState)
+                .append(", inFlight=").append(getInFlight());
+        if (requestLimiter != null) {
+            builder.append(", limiterWaits=").append(limiterWaits)
+                    .append(", limiterRejections=").append(getLimiterRejections());
+        }
+        if (getCollapsedWrites() > 0) {
+            builder.append(", collapsedWrites=").append(getCollapsedWrites());
+        }
+        if (fingerprintIndex != null) {
+            builder.append(", skippedWrites=").append(getSkippedWrites())
+                    .append(", fingerprintIndex=").append(fingerprintIndex);
+        }
+        if (connectionPoolStats != null) {
+            builder.append(", connectionPool=").append(connectionPoolStats);
+        }
+        return builder.append('}').toString();
+    }
+}
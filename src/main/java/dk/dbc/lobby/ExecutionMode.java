@@ -0,0 +1,77 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Kind of threads on which a {@link LobbyConnector} runs its own work, like
+ * the requests of batch helpers and page prefetching, including the waits
+ * between retries of those requests
+ * <p>
+ * {@link #VIRTUAL_THREADS} requires a Java 21 runtime. Since the connector is
+ * built for Java 11, virtual threads are created reflectively, and on older
+ * runtimes platform threads are used instead.
+ * </p>
+ */
+public enum ExecutionMode {
+    PLATFORM_THREADS,
+    VIRTUAL_THREADS;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionMode.class);
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    /**
+     * @return true if threads of this kind can be created by the running JVM
+     */
+    public boolean isSupported() {
+        return this == PLATFORM_THREADS || OF_VIRTUAL != null;
+    }
+
+    ThreadFactory newThreadFactory(String name) {
+        if (this == VIRTUAL_THREADS && OF_VIRTUAL != null) {
+            return newVirtualThreadFactory(name);
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String name) {
+        try {
+            // builders are not thread safe, so a new one is made for each factory
+            final Object builder = OF_VIRTUAL.invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, name + "-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread factory", e);
+        }
+    }
+
+    private static Method findOfVirtual() {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // preview API on Java 19 and 20 without --enable-preview
+            LOGGER.debug("Virtual threads not available", e);
+            return null;
+        }
+    }
+}
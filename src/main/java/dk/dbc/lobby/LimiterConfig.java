@@ -0,0 +1,150 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.time.Duration;
+
+/**
+ * Settings of a {@link RequestLimiter}
+ * <p>
+ * Both limits are off by default. The rate limit is a token bucket allowing
+ * short bursts above the average rate. The adaptive concurrency limit is
+ * raised by one for each window of requests completing fine, and cut by a
+ * fixed ratio whenever a request fails with a 5xx status or a processing
+ * exception, or the average latency of recent requests exceeds the long-term
+ * average by more than the latency tolerance.
+ * </p>
+ */
+public class LimiterConfig {
+    private double requestsPerSecond;
+    private int burst = 1;
+    private boolean adaptiveConcurrency;
+    private int initialConcurrency = 20;
+    private int minConcurrency = 1;
+    private int maxConcurrency = 200;
+    private double backoffRatio = 0.9;
+    private double latencyTolerance = 2.0;
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    /**
+     * @param requestsPerSecond average number of requests per second, zero for no rate limit (default 0)
+     * @return this config
+     */
+    public LimiterConfig withRequestsPerSecond(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * @param burst number of requests allowed back to back after an idle period (default 1)
+     * @return this config
+     */
+    public LimiterConfig withBurst(int burst) {
+        this.burst = burst;
+        return this;
+    }
+
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    /**
+     * @param adaptiveConcurrency whether to limit the number of requests in flight (default false)
+     * @return this config
+     */
+    public LimiterConfig withAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        return this;
+    }
+
+    public int getInitialConcurrency() {
+        return initialConcurrency;
+    }
+
+    /**
+     * @param initialConcurrency starting concurrency limit, kept within the bounds (default 20)
+     * @return this config
+     */
+    public LimiterConfig withInitialConcurrency(int initialConcurrency) {
+        this.initialConcurrency = initialConcurrency;
+        return this;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    /**
+     * @param minConcurrency lower bound of the concurrency limit (default 1)
+     * @return this config
+     */
+    public LimiterConfig withMinConcurrency(int minConcurrency) {
+        this.minConcurrency = minConcurrency;
+        return this;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @param maxConcurrency upper bound of the concurrency limit (default 200)
+     * @return this config
+     */
+    public LimiterConfig withMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * @param backoffRatio factor applied to the concurrency limit on overload, in the range (0, 1) (default 0.9)
+     * @return this config
+     */
+    public LimiterConfig withBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * @param latencyTolerance recent latency, as a multiple of the long-term average latency,
+     *                         above which the lobby service is considered overloaded (default 2.0)
+     * @return this config
+     */
+    public LimiterConfig withLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+        return this;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @param maxWait longest time a request may wait for the limiter before
+     *                being rejected (default 30 seconds)
+     * @return this config
+     */
+    public LimiterConfig withMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+        return this;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Incremental change feed of lobby applicants
+ * <p>
+ * The feed keeps a high-water mark on {@link Applicant#getTimeOfLastModification()}
+ * and each {@link #poll(Listener)} only asks the lobby service for applicants
+ * modified at or after the watermark. Since the bound is inclusive, the ids
+ * already delivered at the watermark are remembered so that they are not
+ * delivered twice.
+ * </p>
+ * <p>
+ * Applicants without a time of last modification can not be placed relative
+ * to the watermark and are returned by every listing. They are delivered by
+ * the first poll returning them, before any other applicants, and then only
+ * again once a poll has not returned them, after {@link #reset()}, or when
+ * a new feed is created.
+ * </p>
+ * <p>
+ * If a watermark file is given, the watermark is loaded from it on creation
+ * and saved to it after each poll, so that a restart does not trigger a
+ * full reload.
+ * </p>
+ * <p>
+ * Instances are not thread safe and are meant to be polled from a single thread.
+ * </p>
+ * <pre>
+ *    LobbyChangeFeed feed = new LobbyChangeFeed(lobbyConnector,
+ *            new LobbyConnector.Params().withCategory("dpf"), Paths.get("dpf.watermark"));
+ *    ...
+ *    feed.poll(applicant -&gt; ...);
+ * </pre>
+ */
+public class LobbyChangeFeed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LobbyChangeFeed.class);
+
+    @FunctionalInterface
+    public interface Listener {
+        void onChange(Applicant applicant);
+    }
+
+    private final LobbyConnector connector;
+    private final LobbyConnector.Params params;
+    private final Path watermarkFile;
+    private Date watermark;
+    private final Set<String> idsAtWatermark = new HashSet<>();
+    // ids delivered without a time of last modification, not persisted
+    private final Set<String> idsWithoutModification = new HashSet<>();
+
+    /**
+     * @param connector lobby connector
+     * @param params    listing params, any modifiedSince param is overridden by the feed
+     */
+    public LobbyChangeFeed(LobbyConnector connector, LobbyConnector.Params params) {
+        this(connector, params, null);
+    }
+
+    /**
+     * @param connector     lobby connector
+     * @param params        listing params, any modifiedSince param is overridden by the feed
+     * @param watermarkFile file in which the watermark is persisted, or null
+     * @throws IllegalStateException if an existing watermark file can not be read
+     */
+    public LobbyChangeFeed(LobbyConnector connector, LobbyConnector.Params params, Path watermarkFile) {
+        this.connector = InvariantUtil.checkNotNullOrThrow(connector, "connector");
+        this.params = new LobbyConnector.Params();
+        if (params != null) {
+            this.params.putAll(params);
+        }
+        this.watermarkFile = watermarkFile;
+        if (watermarkFile != null && Files.exists(watermarkFile)) {
+            loadWatermark();
+        }
+    }
+
+    /**
+     * Hands applicants created or modified since the last poll to the given
+     * listener in order of modification time
+     * <p>
+     * If the listener throws, the watermark reflects the applicants
+     * delivered so far and the exception is rethrown.
+     * </p>
+     * @param listener change listener
+     * @return number of applicants delivered
+     * @throws LobbyConnectorException on failure to retrieve applicants
+     *                                 or to persist the watermark
+     */
+    public int poll(Listener listener) throws LobbyConnectorException {
+        params.withModifiedSince(watermark);
+        final Applicant[] applicants = connector.getApplicants(params).clone();
+        Arrays.sort(applicants, Comparator.comparing(Applicant::getTimeOfLastModification,
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        int delivered = 0;
+        final Set<String> listedWithoutModification = new HashSet<>();
+        try {
+            for (Applicant applicant : applicants) {
+                final Date modified = applicant.getTimeOfLastModification();
+                if (modified == null) {
+                    listedWithoutModification.add(applicant.getId());
+                    if (!idsWithoutModification.contains(applicant.getId())) {
+                        listener.onChange(applicant);
+                        delivered++;
+                        idsWithoutModification.add(applicant.getId());
+                    }
+                    continue;
+                }
+                if (watermark != null) {
+                    if (modified.before(watermark)
+                            || modified.equals(watermark) && idsAtWatermark.contains(applicant.getId())) {
+                        continue;
+                    }
+                }
+                listener.onChange(applicant);
+                delivered++;
+                if (watermark == null || modified.after(watermark)) {
+                    watermark = modified;
+                    idsAtWatermark.clear();
+                }
+                idsAtWatermark.add(applicant.getId());
+            }
+            // forget applicants no longer listed, or since given a time of last modification
+            idsWithoutModification.retainAll(listedWithoutModification);
+        } finally {
+            if (delivered > 0) {
+                saveWatermark();
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * @return time of last modification of the most recently delivered applicant, or null
+     */
+    public Date getWatermark() {
+        return watermark == null ? null : new Date(watermark.getTime());
+    }
+
+    /**
+     * Forgets the watermark, causing the next poll to deliver all applicants
+     * @throws LobbyConnectorException on failure to persist the watermark
+     */
+    public void reset() throws LobbyConnectorException {
+        watermark = null;
+        idsAtWatermark.clear();
+        idsWithoutModification.clear();
+        saveWatermark();
+    }
+
+    /* Watermark file format: epoch millis on the first line,
+       followed by the ids delivered at the watermark, one per line */
+    private void loadWatermark() {
+        try {
+            final List<String> lines = Files.readAllLines(watermarkFile, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && !lines.get(0).isEmpty()) {
+                watermark = new Date(Long.parseLong(lines.get(0)));
+                idsAtWatermark.addAll(lines.subList(1, lines.size()));
+            }
+            LOGGER.info("Loaded lobby change feed watermark {} from {}", watermark, watermarkFile);
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Unable to read watermark file " + watermarkFile, e);
+        }
+    }
+
+    private void saveWatermark() throws LobbyConnectorException {
+        if (watermarkFile == null) {
+            return;
+        }
+        final List<String> lines = new ArrayList<>(idsAtWatermark.size() + 1);
+        lines.add(watermark == null ? "" : Long.toString(watermark.getTime()));
+        lines.addAll(idsAtWatermark);
+        try {
+            final Path tmpFile = watermarkFile.resolveSibling(watermarkFile.getFileName() + ".tmp");
+            Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+            Files.move(tmpFile, watermarkFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to write watermark file " + watermarkFile, e);
+        }
+    }
+}
@@ -5,25 +5,63 @@
 
 package dk.dbc.lobby;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import dk.dbc.httpclient.FailSafeHttpClient;
-import dk.dbc.httpclient.HttpGet;
-import dk.dbc.httpclient.HttpPut;
-import dk.dbc.httpclient.PathBuilder;
+import dk.dbc.httpclient.HttpClient;
 import dk.dbc.invariant.InvariantUtil;
-import dk.dbc.util.Stopwatch;
 import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import net.jodah.failsafe.CircuitBreaker;
+import net.jodah.failsafe.CircuitBreakerOpenException;
+import net.jodah.failsafe.Failsafe;
+import net.jodah.failsafe.FailsafeExecutor;
 import net.jodah.failsafe.RetryPolicy;
+import net.jodah.failsafe.event.ExecutionAttemptedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class LobbyConnector {
 
@@ -32,44 +70,101 @@ public class LobbyConnector {
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LobbyConnector.class);
-    private static final String PATH_GET_APPLICANTS = "/v1/api/applicants";
-    private static final String PATH_GET_APPLICANT_BODY = "/v1/api/applicants/%s/body";
-    private static final String PATH_CREATE_OR_REPLACE_APPLICANT = "/v1/api/applicants/{id}";
+    static final String PATH_GET_APPLICANTS = "/v1/api/applicants";
+    static final String PATH_CREATE_OR_REPLACE_APPLICANT = "/v1/api/applicants/{id}";
+    static final String PATH_APPLICANT_BODY = "/v1/api/applicants/{id}/body";
+    static final String PATH_APPLICANT_STATE = "/v1/api/applicants/{id}/state";
+    static final String HEADER_NEXT_CURSOR = "X-Next-Cursor";
+    static final String BODY_LINK_SUFFIX = "/body";
 
+    private static final String ACCEPT_SMILE_OR_JSON = WireFormat.SMILE.getMediaType() + ", "
+            + MediaType.APPLICATION_JSON + ";q=0.9";
+
+    static final int DEFAULT_BULK_CONCURRENCY = 8;
+
+    private static final int STATUS_CODE_NOT_FOUND = 404;
     private static final int STATUS_CODE_GONE = 410;
     private static final int STATUS_CODE_UNPROCESSABLE_ENTITY = 422;
 
-    private static final RetryPolicy<Response> RETRY_POLICY = new RetryPolicy<Response>()
-            .handle(ProcessingException.class)
-            .handleResultIf(response -> response.getStatus() == 404
-                    || response.getStatus() == 500
-                    || response.getStatus() == 502)
-            .withDelay(Duration.ofSeconds(10))
-            .withMaxRetries(6);
+    static final RetryPolicy<Response> RETRY_POLICY = newRetryPolicy(LobbyConnectorMetrics.NOOP);
 
-    private final FailSafeHttpClient failSafeHttpClient;
+    private final HttpClient httpClient;
     private final String baseUrl;
+    // Resolved once, requests only bind the applicant id or add query params
+    private final WebTarget applicantsTarget;
+    private final WebTarget applicantTarget;
+    private final WebTarget applicantBodyTarget;
+    private final WebTarget applicantStateTarget;
+    private final String bodyLinkPrefix;
     private final LobbyConnector.LogLevelMethod logger;
+    private final TimingLogLevel level;
+    private final LobbyConnectorMetrics metrics;
+    // Only set when retries are handled by this connector, rather than by a FailSafeHttpClient
+    private final Supplier<FailsafeExecutor<Response>> failsafe;
+    private final RetryBudget retryBudget;
+    private final CircuitBreaker<Response> circuitBreaker;
+    private ApplicantBodyCache bodyCache;
+    private ConditionalRequestCache conditionalRequestCache;
+    private RequestCoalescer requestCoalescer;
+    private volatile RequestLimiter requestLimiter;
+    private volatile ApplicantFingerprintIndex fingerprintIndex;
+    private WireFormat wireFormat = WireFormat.JSON;
+    private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+    // Runs batch helpers and fan-out listings, created on first use and shut down by close()
+    private ExecutorService executor;
+    private boolean multiValuedQueries;
+    private int fanOutConcurrency = DEFAULT_BULK_CONCURRENCY;
+    private ObjectMapperProvider objectMapperProvider = ObjectMapperProvider.getDefault();
+    // Set once the lobby service has answered in the binary format
+    private volatile boolean binaryFormatAdvertised;
 
     /**
-     * Returns new instance with default retry policy
+     * Returns new instance with default retry configuration
      *
      * @param httpClient web resources client
      * @param baseUrl    base URL for lobby service endpoint
      */
     public LobbyConnector(Client httpClient, String baseUrl) {
-        this(FailSafeHttpClient.create(httpClient, RETRY_POLICY), baseUrl, LobbyConnector.TimingLogLevel.INFO);
+        this(httpClient, baseUrl, LobbyConnector.TimingLogLevel.INFO);
     }
 
     /**
-     * Returns new instance with default retry policy
+     * Returns new instance with default retry configuration
      *
      * @param httpClient web resources client
      * @param baseUrl    base URL for lobby service endpoint
      * @param level      timings log level
      */
     public LobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level) {
-        this(FailSafeHttpClient.create(httpClient, RETRY_POLICY), baseUrl, level);
+        this(httpClient, baseUrl, level, LobbyConnectorMetrics.NOOP);
+    }
+
+    /**
+     * Returns new instance with default retry configuration, reporting to the given metrics
+     *
+     * @param httpClient web resources client
+     * @param baseUrl    base URL for lobby service endpoint
+     * @param level      timings log level
+     * @param metrics    metrics receiving timings, outcomes and retries
+     */
+    public LobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                          LobbyConnectorMetrics metrics) {
+        this(httpClient, baseUrl, level, metrics, new RetryConfig());
+    }
+
+    /**
+     * Returns new instance with custom retry configuration, reporting to the given metrics
+     *
+     * @param httpClient  web resources client
+     * @param baseUrl     base URL for lobby service endpoint
+     * @param level       timings log level
+     * @param metrics     metrics receiving timings, outcomes, retries and circuit breaker state
+     * @param retryConfig retry, retry budget and circuit breaker settings
+     */
+    public LobbyConnector(Client httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                          LobbyConnectorMetrics metrics, RetryConfig retryConfig) {
+        this(HttpClient.create(InvariantUtil.checkNotNullOrThrow(httpClient, "httpClient")), baseUrl, level,
+                metrics, InvariantUtil.checkNotNullOrThrow(retryConfig, "retryConfig"));
     }
 
     /**
@@ -90,83 +185,1257 @@ public class LobbyConnector {
      * @param level              timings log level
      */
     public LobbyConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl, LobbyConnector.TimingLogLevel level) {
-        this.failSafeHttpClient = InvariantUtil.checkNotNullOrThrow(
-                failSafeHttpClient, "failSafeHttpClient");
+        this(failSafeHttpClient, baseUrl, level, LobbyConnectorMetrics.NOOP);
+    }
+
+    /**
+     * Returns new instance with custom retry policy, reporting to the given metrics
+     * <p>
+     * Retries are only reported if the retry policy of the given client
+     * was created by {@link #newRetryPolicy(LobbyConnectorMetrics)}.
+     * </p>
+     *
+     * @param failSafeHttpClient web resources client with custom retry policy
+     * @param baseUrl            base URL for lobby service endpoint
+     * @param level              timings log level
+     * @param metrics            metrics receiving timings and outcomes
+     */
+    public LobbyConnector(FailSafeHttpClient failSafeHttpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                          LobbyConnectorMetrics metrics) {
+        this(InvariantUtil.checkNotNullOrThrow(failSafeHttpClient, "failSafeHttpClient"),
+                baseUrl, level, metrics, null);
+    }
+
+    private LobbyConnector(HttpClient httpClient, String baseUrl, LobbyConnector.TimingLogLevel level,
+                           LobbyConnectorMetrics metrics, RetryConfig retryConfig) {
+        this.httpClient = httpClient;
         this.baseUrl = InvariantUtil.checkNotNullNotEmptyOrThrow(
                 baseUrl, "baseUrl");
-        switch (level) {
-            case TRACE:
-                logger = LOGGER::trace;
-                break;
-            case DEBUG:
-                logger = LOGGER::debug;
-                break;
-            case INFO:
-                logger = LOGGER::info;
-                break;
-            case WARN:
-                logger = LOGGER::warn;
-                break;
-            case ERROR:
-                logger = LOGGER::error;
-                break;
+        final WebTarget baseTarget = httpClient.getClient().target(baseUrl);
+        this.applicantsTarget = baseTarget.path(PATH_GET_APPLICANTS);
+        this.applicantTarget = baseTarget.path(PATH_CREATE_OR_REPLACE_APPLICANT);
+        this.applicantBodyTarget = baseTarget.path(PATH_APPLICANT_BODY);
+        this.applicantStateTarget = baseTarget.path(PATH_APPLICANT_STATE);
+        this.bodyLinkPrefix = baseUrl + PATH_GET_APPLICANTS + "/";
+        this.level = level;
+        this.logger = logLevelMethod(level);
+        this.metrics = InvariantUtil.checkNotNullOrThrow(metrics, "metrics");
+        if (retryConfig == null) {
+            this.retryBudget = null;
+            this.circuitBreaker = null;
+            this.failsafe = null;
+        } else {
+            this.retryBudget = new RetryBudget(retryConfig.getRetryBudgetRatio(),
+                    retryConfig.getRetryBudgetReserve());
+            metrics.retryBudget(retryBudget);
+            this.circuitBreaker = retryConfig.isCircuitBreakerEnabled()
+                    ? newCircuitBreaker(retryConfig, metrics)
+                    : null;
+            this.failsafe = newFailsafe(retryConfig, retryBudget, circuitBreaker, metrics);
+        }
+    }
+
+    /* Retry policy and, if enabled, circuit breaker as configured,
+       shared by the blocking and the non-blocking connector */
+    static Supplier<FailsafeExecutor<Response>> newFailsafe(RetryConfig retryConfig, RetryBudget retryBudget,
+                                                            LobbyConnectorMetrics metrics) {
+        return newFailsafe(retryConfig, retryBudget,
+                retryConfig.isCircuitBreakerEnabled() ? newCircuitBreaker(retryConfig, metrics) : null, metrics);
+    }
+
+    static Supplier<FailsafeExecutor<Response>> newFailsafe(RetryPolicy<Response> retryPolicy) {
+        return () -> Failsafe.with(retryPolicy);
+    }
+
+    /* The circuit breaker is shared by all requests, whereas each request
+       gets its own retry policy, keeping track of its failed attempts */
+    private static Supplier<FailsafeExecutor<Response>> newFailsafe(RetryConfig retryConfig, RetryBudget retryBudget,
+                                                                    CircuitBreaker<Response> circuitBreaker,
+                                                                    LobbyConnectorMetrics metrics) {
+        return () -> {
+            final RetryPolicy<Response> retryPolicy = newRetryPolicy(retryConfig, retryBudget, circuitBreaker, metrics);
+            if (circuitBreaker != null) {
+                return Failsafe.with(retryPolicy, circuitBreaker);
+            }
+            return Failsafe.with(retryPolicy);
+        };
+    }
+
+    /**
+     * Returns new instance of the fixed-delay retry policy, for use with
+     * {@link FailSafeHttpClient}: retry on processing exceptions and on
+     * transient failure status codes, six times with a ten-second delay
+     *
+     * @param metrics metrics receiving retry events
+     * @return retry policy
+     * @see #isTransientFailure(Response)
+     */
+    public static RetryPolicy<Response> newRetryPolicy(LobbyConnectorMetrics metrics) {
+        return new RetryPolicy<Response>()
+                .handle(ProcessingException.class)
+                .handleResultIf(LobbyConnector::isTransientFailure)
+                .abortOn(RequestRejectedException.class)
+                .withDelay(Duration.ofSeconds(10))
+                .withMaxRetries(6)
+                .onRetry(event -> retried(event, metrics));
+    }
+
+    private static RetryPolicy<Response> newRetryPolicy(RetryConfig retryConfig, RetryBudget retryBudget,
+                                                        CircuitBreaker<Response> circuitBreaker,
+                                                        LobbyConnectorMetrics metrics) {
+        final int maxRetries = retryConfig.getMaxRetries();
+        final long maxDurationNanos = retryConfig.getMaxDuration().toNanos();
+        final long startNanos = System.nanoTime();
+        final AtomicInteger failedAttempts = new AtomicInteger();
+        final RetryPolicy<Response> retryPolicy = new RetryPolicy<Response>()
+                .handle(ProcessingException.class)
+                .handleResultIf(LobbyConnector::isTransientFailure)
+                .withBackoff(retryConfig.getInitialDelay().toMillis(), retryConfig.getMaxDelay().toMillis(),
+                        ChronoUnit.MILLIS)
+                .withMaxRetries(retryConfig.getMaxRetries())
+                .withMaxDuration(retryConfig.getMaxDuration())
+                // Retrying a request turned away by the client-side limiter would only add to the queue
+                .abortOn(RequestRejectedException.class)
+                // Abort conditions are evaluated for failed attempts only, in order. Once the
+                // circuit breaker has opened there is no point in waiting for the next attempt.
+                .abortIf((response, failure) -> circuitBreaker != null && circuitBreaker.isOpen())
+                .abortIf((response, failure) -> {
+                    // Also evaluated for the last failed attempt, which is not retried anyway
+                    if (maxRetries != -1 && failedAttempts.incrementAndGet() > maxRetries
+                            || System.nanoTime() - startNanos > maxDurationNanos) {
+                        return false;
+                    }
+                    if (retryBudget.tryWithdraw()) {
+                        return false;
+                    }
+                    LOGGER.warn("Retry budget exhausted, not retrying lobby service request");
+                    metrics.retryBudgetExhausted();
+                    return true;
+                })
+                .onRetry(event -> retried(event, metrics));
+        if (retryConfig.getJitterFactor() > 0) {
+            retryPolicy.withJitter(retryConfig.getJitterFactor());
+        }
+        return retryPolicy;
+    }
+
+    /* The failed response of a retried attempt is discarded,
+       and would otherwise keep its pooled connection */
+    static void retried(ExecutionAttemptedEvent<Response> event, LobbyConnectorMetrics metrics) {
+        final Response response = event.getLastResult();
+        if (response != null) {
+            response.close();
+        }
+        metrics.retried();
+    }
+
+    private static CircuitBreaker<Response> newCircuitBreaker(RetryConfig retryConfig,
+                                                              LobbyConnectorMetrics metrics) {
+        return new CircuitBreaker<Response>()
+                // Requests turned away by the client-side limiter never reached the lobby service.
+                // Not handling them makes them count as successes, which at most delays opening.
+                .handleIf(failure -> failure instanceof ProcessingException
+                        && !(failure instanceof RequestRejectedException))
+                .handleResultIf(LobbyConnector::isTransientFailure)
+                .withFailureThreshold(retryConfig.getCircuitBreakerFailureThreshold())
+                .withSuccessThreshold(retryConfig.getCircuitBreakerSuccessThreshold())
+                .withDelay(retryConfig.getCircuitBreakerDelay())
+                .onOpen(() -> {
+                    LOGGER.warn("Lobby service circuit breaker opened");
+                    metrics.circuitBreakerStateChanged(LobbyConnectorMetrics.CircuitBreakerState.OPEN);
+                })
+                .onHalfOpen(() -> metrics.circuitBreakerStateChanged(
+                        LobbyConnectorMetrics.CircuitBreakerState.HALF_OPEN))
+                .onClose(() -> {
+                    LOGGER.info("Lobby service circuit breaker closed");
+                    metrics.circuitBreakerStateChanged(LobbyConnectorMetrics.CircuitBreakerState.CLOSED);
+                });
+    }
+
+    /**
+     * Decides whether a response signals a transient failure worth retrying
+     * <p>
+     * Status codes 500, 502, 503 and 504 are transient. So is 404, unless it
+     * carries a JSON entity: such a 404 is produced by the lobby service
+     * itself and is real, whereas a 404 without one typically comes from a
+     * proxy or from the lobby service not being (re)deployed yet.
+     * </p>
+     *
+     * @param response lobby service response
+     * @return true if the request should be retried
+     */
+    public static boolean isTransientFailure(Response response) {
+        switch (response.getStatus()) {
+            case 404:
+                return !MediaType.APPLICATION_JSON_TYPE.isCompatible(response.getMediaType());
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
             default:
-                logger = LOGGER::info;
-                break;
+                return false;
         }
     }
 
+    public LobbyConnectorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns applicants matching the given params
+     * <p>
+     * If a {@link ConditionalRequestCache} is configured, the request is made
+     * conditional on the listing having changed since the last call with the
+     * same params, and an unchanged listing is returned from the cache. Note
+     * that cached {@link Applicant} instances are shared between calls.
+     * </p>
+     * <p>
+     * If a {@link RequestCoalescer} is configured, concurrent calls with
+     * equal params share a single request and its result.
+     * </p>
+     * <p>
+     * Params with several categories or states are fanned out into concurrent
+     * listings of each combination, unless multi-valued queries are enabled.
+     * The merged listing holds each applicant once.
+     * </p>
+     * @param params query parameters
+     * @return applicants with body links
+     * @throws LobbyConnectorException on failure to retrieve the listing
+     * @see #withConditionalRequestCache(ConditionalRequestCache)
+     * @see #withRequestCoalescer(RequestCoalescer)
+     * @see #withMultiValuedQueries(boolean)
+     */
     public Applicant[] getApplicants(Params params) throws LobbyConnectorException {
-        final Stopwatch stopwatch = new Stopwatch();
+        if (isFanOut(params)) {
+            return fanOut(params).merge();
+        }
+        if (requestCoalescer != null) {
+            return requestCoalescer.get(params, () -> fetchApplicants(params));
+        }
+        return fetchApplicants(params);
+    }
+
+    private Applicant[] fetchApplicants(Params params) throws LobbyConnectorException {
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.GET_APPLICANTS);
         try {
-            final Applicant[] applicants = sendRequest(PATH_GET_APPLICANTS, params, Applicant[].class);
+            final ConditionalRequestCache.Entry cached = conditionalRequestCache != null
+                    ? conditionalRequestCache.get(params) : null;
+            final LobbyRequest request = newListingRequest(params);
+            if (cached != null) {
+                if (cached.getETag() != null) {
+                    request.withHeader(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+                }
+                if (cached.getLastModified() != null) {
+                    request.withHeader(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+                }
+            }
+            final Response response = execute(request);
+            if (cached != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                response.close();
+                conditionalRequestCache.hit(cached);
+                return cached.getApplicants().clone();
+            }
+            assertResponseStatus(response, Response.Status.OK);
+            recordResponseSize(LobbyConnectorMetrics.Operation.GET_APPLICANTS, response);
+            final Applicant[] applicants = readApplicants(response);
+            metrics.applicantsListed(LobbyConnectorMetrics.Operation.GET_APPLICANTS, applicants.length);
 
             for (Applicant applicant: applicants) {
                 constructBodyLink(applicant);
             }
 
+            if (conditionalRequestCache != null) {
+                conditionalRequestCache.miss();
+                conditionalRequestCache.put(params, response.getHeaderString(HttpHeaders.ETAG),
+                        response.getHeaderString(HttpHeaders.LAST_MODIFIED), applicants.clone());
+            }
+
             return applicants;
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Returns lightweight views of the applicants matching the given params
+     * <p>
+     * Views retain considerably less memory than full {@link Applicant}
+     * instances, making them suitable for holding large listings.
+     * </p>
+     * @param params query parameters
+     * @return applicant views with body links
+     * @throws LobbyConnectorException on failure to retrieve the listing
+     * @see ApplicantView
+     */
+    public ApplicantView[] getApplicantViews(Params params) throws LobbyConnectorException {
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.GET_APPLICANT_VIEWS);
+        try {
+            final Response response = execute(newListingRequest(params));
+            assertResponseStatus(response, Response.Status.OK);
+            recordResponseSize(LobbyConnectorMetrics.Operation.GET_APPLICANT_VIEWS, response);
+            final ApplicantView[] views = readListing(response,
+                    objectMapperProvider::getApplicantViewsReader, ApplicantView[].class);
+            metrics.applicantsListed(LobbyConnectorMetrics.Operation.GET_APPLICANT_VIEWS, views.length);
+            for (ApplicantView view : views) {
+                view.setBodyLinkPrefix(bodyLinkPrefix);
+            }
+            return views;
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Returns a single page of applicants matching the given params
+     * <p>
+     * The page is selected by the {@link Params#withLimit(Integer) limit} and
+     * either the {@link Params#withOffset(Integer) offset} or the
+     * {@link Params#withCursor(String) cursor} params. If the lobby service
+     * supports cursors it returns the cursor of the next page in the
+     * {@value #HEADER_NEXT_CURSOR} header.
+     * </p>
+     * @param params query parameters including paging params
+     * @return page of applicants with body links
+     * @throws LobbyConnectorException on failure to retrieve the page
+     * @see #iterateApplicants(Params, int)
+     */
+    public ApplicantPage getApplicantsPage(Params params) throws LobbyConnectorException {
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.GET_APPLICANTS_PAGE);
+        try {
+            final Response response = execute(newListingRequest(params));
+            assertResponseStatus(response, Response.Status.OK);
+            recordResponseSize(LobbyConnectorMetrics.Operation.GET_APPLICANTS_PAGE, response);
+            final Applicant[] applicants = readApplicants(response);
+            metrics.applicantsListed(LobbyConnectorMetrics.Operation.GET_APPLICANTS_PAGE, applicants.length);
+            for (Applicant applicant : applicants) {
+                constructBodyLink(applicant);
+            }
+            return new ApplicantPage(applicants, response.getHeaderString(HEADER_NEXT_CURSOR));
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
         } finally {
-            logger.log("getApplicants() took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            timer.stop();
         }
     }
 
+    /**
+     * Iterates over applicants matching the given params one page at a time,
+     * fetching the next page in the background while the current one is processed
+     * <p>
+     * The returned iterator must be closed if it is abandoned before being exhausted.
+     * </p>
+     * @param params   query parameters, optionally with an offset or cursor to start from
+     * @param pageSize maximum number of applicants per page
+     * @return iterator over applicants with body links
+     */
+    public PagedApplicantIterator iterateApplicants(Params params, int pageSize) {
+        return new PagedApplicantIterator(this, params, pageSize);
+    }
+
+    /**
+     * Returns new buffer collapsing repeated writes of the same applicant,
+     * sending only the latest version of each applicant
+     * <p>
+     * The returned buffer must be closed to send any remaining applicants.
+     * </p>
+     * @param window        time from the first buffered write until the buffer is sent
+     * @param maxApplicants number of buffered applicants at which the buffer is sent
+     * @return write coalescing buffer
+     */
+    public WriteCoalescingBuffer newWriteCoalescingBuffer(Duration window, int maxApplicants) {
+        return new WriteCoalescingBuffer(this, window, maxApplicants);
+    }
+
+    /**
+     * Streams applicants matching the given params.
+     * <p>
+     * The response is parsed incrementally one applicant at a time, so memory
+     * usage stays flat regardless of the number of applicants returned.
+     * The returned stream holds on to the underlying connection and must be
+     * closed by the caller, preferably using try-with-resources.
+     * </p>
+     * <p>
+     * Params with several categories or states are fanned out as by
+     * {@link #getApplicants(Params)}. The stream then yields the listing of
+     * each combination as soon as it and the ones before it are fetched,
+     * skipping applicants already seen, and closing it cancels any listings
+     * not yet fetched.
+     * </p>
+     * @param params query parameters
+     * @return stream of applicants with body links
+     * @throws LobbyConnectorException on failure to initiate the listing
+     */
+    public Stream<Applicant> streamApplicants(Params params) throws LobbyConnectorException {
+        if (isFanOut(params)) {
+            return fanOut(params).stream();
+        }
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.STREAM_APPLICANTS);
+        final Response response;
+        final MappingIterator<Applicant> iterator;
+        try {
+            response = sendRequest(params);
+            recordResponseSize(LobbyConnectorMetrics.Operation.STREAM_APPLICANTS, response);
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            timer.stop();
+            throw e;
+        }
+        try {
+            iterator = objectMapperProvider.getApplicantReader(wireFormatOf(response))
+                    .readValues(response.readEntity(InputStream.class));
+        } catch (IOException | ProcessingException e) {
+            response.close();
+            timer.failed(e);
+            timer.stop();
+            throw new LobbyConnectorException("Unable to read applicants from lobby service response", e);
+        }
+        final int[] count = new int[1];
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .peek(applicant -> {
+                    constructBodyLink(applicant);
+                    count[0]++;
+                })
+                .onClose(() -> {
+                    try {
+                        iterator.close();
+                    } catch (IOException e) {
+                        LOGGER.warn("Unable to close applicants stream", e);
+                    } finally {
+                        response.close();
+                        metrics.applicantsListed(LobbyConnectorMetrics.Operation.STREAM_APPLICANTS, count[0]);
+                        timer.stop();
+                    }
+                });
+    }
+
+    /**
+     * Creates or replaces applicant
+     * <p>
+     * If an {@link ApplicantFingerprintIndex} is configured, the write is
+     * skipped when the applicant is unchanged since it was last written.
+     * </p>
+     * @param applicant applicant
+     * @throws LobbyConnectorException on failure to create or replace the applicant
+     * @see #withFingerprintIndex(ApplicantFingerprintIndex)
+     */
     public void createOrReplaceApplicant(Applicant applicant) throws LobbyConnectorException {
-        final Stopwatch stopwatch = new Stopwatch();
+        final ApplicantFingerprintIndex index = fingerprintIndex;
+        if (index == null) {
+            putApplicant(applicant, null);
+            return;
+        }
+        InvariantUtil.checkNotNullOrThrow(applicant, "applicant");
+        final long fingerprint = ApplicantFingerprintIndex.fingerprint(applicant);
+        if (index.isUnchanged(applicant.getId(), fingerprint)) {
+            index.skipped();
+            metrics.applicantWritesSkipped(1);
+            return;
+        }
+        putApplicant(applicant, null);
+        index.sent(applicant.getId(), fingerprint);
+    }
+
+    /**
+     * Creates or replaces applicant with the body read from the given file
+     * <p>
+     * The body is base64-encoded into the request while being read, so memory
+     * usage stays constant regardless of body size. Any body set on the
+     * applicant itself is ignored.
+     * </p>
+     * @param applicant applicant without body
+     * @param body      file containing the applicant body
+     * @throws LobbyConnectorException on failure to create or replace the applicant
+     */
+    public void createOrReplaceApplicant(Applicant applicant, Path body) throws LobbyConnectorException {
+        final ApplicantUploadEntity entity = ApplicantUploadEntity.of(applicant,
+                InvariantUtil.checkNotNullOrThrow(body, "body"));
+        forgetFingerprint(applicant.getId());
+        putApplicant(applicant, entity);
+    }
+
+    /**
+     * Creates or replaces applicant with the body read from the given buffer
+     * <p>
+     * The remaining bytes of the buffer are base64-encoded into the request
+     * without being copied. The position of the buffer is left unchanged.
+     * Any body set on the applicant itself is ignored.
+     * </p>
+     * @param applicant applicant without body
+     * @param body      buffer containing the applicant body
+     * @throws LobbyConnectorException on failure to create or replace the applicant
+     */
+    public void createOrReplaceApplicant(Applicant applicant, ByteBuffer body) throws LobbyConnectorException {
+        final ApplicantUploadEntity entity = ApplicantUploadEntity.of(applicant,
+                InvariantUtil.checkNotNullOrThrow(body, "body"));
+        forgetFingerprint(applicant.getId());
+        putApplicant(applicant, entity);
+    }
+
+    /**
+     * Creates or replaces applicant with the body read from the given stream
+     * <p>
+     * The body is base64-encoded into the request while being read, so memory
+     * usage stays constant regardless of body size. The stream is closed when
+     * read. Since it can only be read once, a failed request is not retried;
+     * use {@link #createOrReplaceApplicant(Applicant, Path)} where retries matter.
+     * Any body set on the applicant itself is ignored.
+     * </p>
+     * @param applicant applicant without body
+     * @param body      stream of the applicant body
+     * @throws LobbyConnectorException on failure to create or replace the applicant
+     */
+    public void createOrReplaceApplicant(Applicant applicant, InputStream body) throws LobbyConnectorException {
+        final ApplicantUploadEntity entity = ApplicantUploadEntity.of(applicant,
+                InvariantUtil.checkNotNullOrThrow(body, "body"));
+        forgetFingerprint(applicant.getId());
+        putApplicant(applicant, entity);
+    }
+
+    /* Upload entities carry a streamed body, otherwise the applicant
+       is written as is, in the binary format if supported */
+    private void putApplicant(Applicant applicant, ApplicantUploadEntity uploadEntity)
+            throws LobbyConnectorException {
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.CREATE_OR_REPLACE_APPLICANT);
+        try {
+            final boolean replayable = uploadEntity == null || uploadEntity.isReplayable();
+            final boolean binary = uploadEntity == null && wireFormat == WireFormat.SMILE && binaryFormatAdvertised;
+            Response response = execute(newPutRequest(applicant, uploadEntity,
+                    binary ? WireFormat.SMILE : WireFormat.JSON), replayable);
+            if (binary && response.getStatus() == Response.Status.UNSUPPORTED_MEDIA_TYPE.getStatusCode()) {
+                LOGGER.info("Lobby service rejected {}, falling back to {}", WireFormat.SMILE, WireFormat.JSON);
+                binaryFormatAdvertised = false;
+                response.close();
+                response = execute(newPutRequest(applicant, null, WireFormat.JSON), replayable);
+            }
+            try {
+                assertResponseStatus(response, Response.Status.CREATED, Response.Status.OK);
+            } finally {
+                response.close();
+            }
+            if (requestCoalescer != null) {
+                requestCoalescer.invalidate();
+            }
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /* Streamed bodies are not fingerprinted, and state changes alter
+       the applicant, so its next write must be sent regardless */
+    private void forgetFingerprint(String id) {
+        final ApplicantFingerprintIndex index = fingerprintIndex;
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    private LobbyRequest newPutRequest(Applicant applicant, ApplicantUploadEntity uploadEntity, WireFormat format) {
+        final StreamingOutput entity;
+        if (uploadEntity != null) {
+            entity = uploadEntity;
+        } else {
+            final ObjectWriter writer = objectMapperProvider.getApplicantWriter(format);
+            entity = outputStream -> writer.writeValue(outputStream, applicant);
+        }
+        return LobbyRequest.put(applicantTarget.resolveTemplate("id", applicant.getId()),
+                entity, format.getMediaType().toString());
+    }
+
+    /**
+     * Creates or replaces applicants using up to {@value #DEFAULT_BULK_CONCURRENCY}
+     * concurrent requests
+     * @param applicants applicants to create or replace
+     * @return per-applicant results in the iteration order of the given collection
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     * @see #createOrReplaceApplicants(Collection, int)
+     */
+    public List<ApplicantResult> createOrReplaceApplicants(Collection<Applicant> applicants)
+            throws LobbyConnectorException {
+        return createOrReplaceApplicants(applicants, DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Creates or replaces applicants using concurrent requests
+     * <p>
+     * A failing applicant does not abort the batch, instead the failure
+     * is reported in the corresponding {@link ApplicantResult}.
+     * </p>
+     * @param applicants  applicants to create or replace
+     * @param concurrency maximum number of requests in flight
+     * @return per-applicant results in the iteration order of the given collection
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     */
+    public List<ApplicantResult> createOrReplaceApplicants(Collection<Applicant> applicants, int concurrency)
+            throws LobbyConnectorException {
+        return runConcurrently("createOrReplaceApplicants", applicants, Applicant::getId, concurrency,
+                this::createOrReplaceApplicant);
+    }
+
+    /**
+     * Changes the state of an applicant, sending only the new state
+     * <p>
+     * Unlike {@link #createOrReplaceApplicant(Applicant)} this leaves body and
+     * additional info of the applicant untouched on the lobby service.
+     * </p>
+     * @param id    applicant id
+     * @param state new state
+     * @throws LobbyConnectorGoneException if the applicant is gone
+     * @throws LobbyConnectorUnprocessableEntityException if the state change is rejected
+     * @throws LobbyConnectorException on other failures to change the state
+     */
+    public void changeApplicantState(String id, ApplicantState state) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullNotEmptyOrThrow(id, "id");
+        InvariantUtil.checkNotNullOrThrow(state, "state");
+        forgetFingerprint(id);
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.CHANGE_APPLICANT_STATE);
         try {
-            final HttpPut httpPut = new HttpPut(failSafeHttpClient)
-                    .withBaseUrl(baseUrl)
-                    .withPathElements(new PathBuilder(PATH_CREATE_OR_REPLACE_APPLICANT)
-                            .bind("id", applicant.getId())
-                            .build())
-                    .withJsonData(applicant);
-
-            final Response response = httpPut.execute();
-            assertResponseStatus(response, Response.Status.CREATED, Response.Status.OK);
+            // the state as a JSON string
+            final byte[] entity = ('"' + state.name() + '"').getBytes(StandardCharsets.UTF_8);
+            final Response response = execute(LobbyRequest.put(applicantStateTarget.resolveTemplate("id", id),
+                    entity, MediaType.APPLICATION_JSON));
+            try {
+                assertResponseStatus(response, Response.Status.OK, Response.Status.NO_CONTENT);
+            } finally {
+                response.close();
+            }
+            if (requestCoalescer != null) {
+                requestCoalescer.invalidate();
+            }
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
         } finally {
-            logger.log("createOrReplaceApplicant() took {} milliseconds",
-                    stopwatch.getElapsedTime(TimeUnit.MILLISECONDS));
+            timer.stop();
+        }
+    }
+
+    /**
+     * Changes the state of applicants using up to {@value #DEFAULT_BULK_CONCURRENCY}
+     * concurrent requests
+     * @param ids   applicant ids
+     * @param state new state
+     * @return per-applicant results in the iteration order of the given collection
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     * @see #changeApplicantStates(Collection, ApplicantState, int)
+     */
+    public List<ApplicantResult> changeApplicantStates(Collection<String> ids, ApplicantState state)
+            throws LobbyConnectorException {
+        return changeApplicantStates(ids, state, DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Changes the state of applicants using concurrent requests, sending only
+     * the new state
+     * <p>
+     * A failing applicant does not abort the batch, instead the failure
+     * is reported in the corresponding {@link ApplicantResult}.
+     * </p>
+     * @param ids         applicant ids
+     * @param state       new state
+     * @param concurrency maximum number of requests in flight
+     * @return per-applicant results in the iteration order of the given collection
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     */
+    public List<ApplicantResult> changeApplicantStates(Collection<String> ids, ApplicantState state,
+                                                       int concurrency) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(state, "state");
+        return runConcurrently("changeApplicantStates", ids, Function.identity(), concurrency,
+                id -> changeApplicantState(id, state));
+    }
+
+    /**
+     * Returns the body of an applicant
+     * <p>
+     * The returned stream holds on to the underlying connection and must be
+     * closed by the caller.
+     * </p>
+     * @param id applicant id
+     * @return applicant body
+     * @throws LobbyConnectorException on failure to retrieve the body
+     */
+    public InputStream getApplicantBody(String id) throws LobbyConnectorException {
+        final RequestTimer timer = startTimer(LobbyConnectorMetrics.Operation.GET_APPLICANT_BODY);
+        try {
+            final Response response = execute(
+                    LobbyRequest.get(applicantBodyTarget.resolveTemplate("id", id)));
+            assertResponseStatus(response, Response.Status.OK);
+            recordResponseSize(LobbyConnectorMetrics.Operation.GET_APPLICANT_BODY, response);
+            return readResponseEntity(response, InputStream.class);
+        } catch (LobbyConnectorException | RuntimeException e) {
+            timer.failed(e);
+            throw e;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Returns the body of an applicant, served from the body cache if one
+     * is configured and holds the body of this version of the applicant
+     * @param applicant applicant as returned by a listing
+     * @return applicant body
+     * @throws LobbyConnectorException on failure to retrieve the body
+     * @see #withBodyCache(ApplicantBodyCache)
+     */
+    public byte[] fetchBody(Applicant applicant) throws LobbyConnectorException {
+        final boolean cacheable = bodyCache != null && applicant.getTimeOfLastModification() != null;
+        if (cacheable) {
+            final byte[] cached = bodyCache.get(applicant.getId(), applicant.getTimeOfLastModification());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final byte[] body;
+        try (InputStream inputStream = getApplicantBody(applicant.getId())) {
+            body = inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to read body of applicant " + applicant.getId(), e);
+        }
+        if (cacheable) {
+            bodyCache.put(applicant.getId(), applicant.getTimeOfLastModification(), body);
+        }
+        return body;
+    }
+
+    /**
+     * Fetches bodies of applicants using up to {@value #DEFAULT_BULK_CONCURRENCY}
+     * concurrent requests
+     * @param applicants applicants as returned by a listing
+     * @return per-applicant results in the order of the given applicants
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     * @see #fetchBodies(Applicant[], int)
+     */
+    public List<ApplicantResult> fetchBodies(Applicant[] applicants) throws LobbyConnectorException {
+        return fetchBodies(applicants, DEFAULT_BULK_CONCURRENCY);
+    }
+
+    /**
+     * Fetches bodies of applicants concurrently, setting the body of each
+     * successfully fetched applicant
+     * @param applicants  applicants as returned by a listing
+     * @param concurrency maximum number of requests in flight
+     * @return per-applicant results in the order of the given applicants
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     */
+    public List<ApplicantResult> fetchBodies(Applicant[] applicants, int concurrency)
+            throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(applicants, "applicants");
+        return runConcurrently("fetchBodies", Arrays.asList(applicants), Applicant::getId, concurrency,
+                applicant -> applicant.setBody(fetchBody(applicant)));
+    }
+
+    /**
+     * Enables caching of bodies retrieved through {@link #fetchBody(Applicant)}
+     * and {@link #fetchBodies(Applicant[])}
+     * @param bodyCache body cache, or null to disable caching
+     * @return this connector
+     */
+    public LobbyConnector withBodyCache(ApplicantBodyCache bodyCache) {
+        this.bodyCache = bodyCache;
+        return this;
+    }
+
+    public Optional<ApplicantBodyCache> getBodyCache() {
+        return Optional.ofNullable(bodyCache);
+    }
+
+    /**
+     * Enables conditional requests for {@link #getApplicants(Params)}
+     * @param conditionalRequestCache listing cache, or null to disable conditional requests
+     * @return this connector
+     */
+    public LobbyConnector withConditionalRequestCache(ConditionalRequestCache conditionalRequestCache) {
+        this.conditionalRequestCache = conditionalRequestCache;
+        return this;
+    }
+
+    public Optional<ConditionalRequestCache> getConditionalRequestCache() {
+        return Optional.ofNullable(conditionalRequestCache);
+    }
+
+    /**
+     * Enables coalescing of concurrent identical {@link #getApplicants(Params)} calls
+     * @param requestCoalescer request coalescer, or null to disable coalescing
+     * @return this connector
+     */
+    public LobbyConnector withRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+        return this;
+    }
+
+    public Optional<RequestCoalescer> getRequestCoalescer() {
+        return Optional.ofNullable(requestCoalescer);
+    }
+
+    /**
+     * Enables skipping of {@link #createOrReplaceApplicant(Applicant)} writes
+     * of applicants unchanged since they were last written
+     * <p>
+     * Only writes through connectors sharing the index are known to it, so it
+     * should only be used where these are the only writers of the applicants.
+     * </p>
+     * @param fingerprintIndex fingerprint index, or null to disable skipping
+     * @return this connector
+     */
+    public LobbyConnector withFingerprintIndex(ApplicantFingerprintIndex fingerprintIndex) {
+        this.fingerprintIndex = fingerprintIndex;
+        if (fingerprintIndex != null) {
+            metrics.fingerprintIndex(fingerprintIndex);
+        }
+        return this;
+    }
+
+    public Optional<ApplicantFingerprintIndex> getFingerprintIndex() {
+        return Optional.ofNullable(fingerprintIndex);
+    }
+
+    /**
+     * Makes params with several categories or states be sent as a single
+     * listing request repeating the query params, for lobby services
+     * supporting this
+     * <p>
+     * Otherwise such params are fanned out into a listing request for each
+     * combination of category and state.
+     * </p>
+     * @param multiValuedQueries true to send multi-valued params in one request
+     * @return this connector
+     */
+    public LobbyConnector withMultiValuedQueries(boolean multiValuedQueries) {
+        this.multiValuedQueries = multiValuedQueries;
+        return this;
+    }
+
+    public boolean isMultiValuedQueries() {
+        return multiValuedQueries;
+    }
+
+    /**
+     * Sets the maximum number of concurrent listing requests when fanning out
+     * params with several categories or states, {@value #DEFAULT_BULK_CONCURRENCY}
+     * by default
+     * @param fanOutConcurrency maximum number of listing requests in flight
+     * @return this connector
+     */
+    public LobbyConnector withFanOutConcurrency(int fanOutConcurrency) {
+        if (fanOutConcurrency < 1) {
+            throw new IllegalArgumentException("fanOutConcurrency must be positive");
         }
+        this.fanOutConcurrency = fanOutConcurrency;
+        return this;
+    }
+
+    public int getFanOutConcurrency() {
+        return fanOutConcurrency;
+    }
+
+    /**
+     * Sets the preferred format of applicant listings and PUTs
+     * <p>
+     * With {@link WireFormat#SMILE} listings are requested as Smile with JSON
+     * as fallback, and applicants are PUT as Smile once the lobby service has
+     * answered a listing in Smile. Should the lobby service reject a Smile PUT,
+     * the request is repeated as JSON.
+     * </p>
+     * @param wireFormat preferred wire format
+     * @return this connector
+     */
+    public LobbyConnector withWireFormat(WireFormat wireFormat) {
+        this.wireFormat = InvariantUtil.checkNotNullOrThrow(wireFormat, "wireFormat");
+        return this;
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * Limits the rate and concurrency of requests made by this connector
+     * <p>
+     * Requests waiting too long for the limiter fail with a
+     * {@link RequestRejectedException}, which is not retried.
+     * </p>
+     * <p>
+     * When retries are handled by a {@link FailSafeHttpClient}, a request holds
+     * its permit through all of its attempts, and only its final outcome, not
+     * its latency, adapts the concurrency limit.
+     * </p>
+     * @param requestLimiter request limiter, or null to disable limiting
+     * @return this connector
+     */
+    public LobbyConnector withRequestLimiter(RequestLimiter requestLimiter) {
+        this.requestLimiter = requestLimiter;
+        if (requestLimiter != null) {
+            metrics.requestLimiter(requestLimiter);
+        }
+        return this;
+    }
+
+    public Optional<RequestLimiter> getRequestLimiter() {
+        return Optional.ofNullable(requestLimiter);
+    }
+
+    /**
+     * Sets the kind of threads used by batch helpers, page prefetching and
+     * write coalescing buffers
+     * <p>
+     * With {@link ExecutionMode#VIRTUAL_THREADS} each request of
+     * {@link #createOrReplaceApplicants(Collection, int)} and
+     * {@link #fetchBodies(Applicant[], int)} runs on a virtual thread, so that
+     * high concurrency and long waits between retries do not tie up platform
+     * threads. Falls back to platform threads if the JVM does not support
+     * virtual threads.
+     * </p>
+     * @param executionMode execution mode
+     * @return this connector
+     */
+    public LobbyConnector withExecutionMode(ExecutionMode executionMode) {
+        InvariantUtil.checkNotNullOrThrow(executionMode, "executionMode");
+        if (!executionMode.isSupported()) {
+            LOGGER.warn("{} not supported by this JVM, using {}", executionMode, ExecutionMode.PLATFORM_THREADS);
+        }
+        synchronized (this) {
+            this.executionMode = executionMode;
+            if (executor != null) {
+                // tasks already running are left to complete
+                executor.shutdown();
+                executor = null;
+            }
+        }
+        return this;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
     }
 
-    private <T> T sendRequest(String basePath, Params params, Class<T> type)
+    /**
+     * Sets the Jackson configuration used for reading and writing applicants,
+     * which should be the one registered on the client of this connector
+     * @param objectMapperProvider object mapper provider
+     * @return this connector
+     */
+    public LobbyConnector withObjectMapperProvider(ObjectMapperProvider objectMapperProvider) {
+        this.objectMapperProvider = InvariantUtil.checkNotNullOrThrow(objectMapperProvider, "objectMapperProvider");
+        return this;
+    }
+
+    private <T> List<ApplicantResult> runConcurrently(String operationName, Collection<T> applicants,
+                                                      Function<T, String> idOf, int concurrency,
+                                                      ApplicantOperation<T> operation)
             throws LobbyConnectorException {
-        final PathBuilder path = new PathBuilder(basePath);
-        final HttpGet httpGet = new HttpGet(failSafeHttpClient)
-                .withBaseUrl(baseUrl)
-                .withPathElements(path.build());
+        InvariantUtil.checkNotNullOrThrow(applicants, "applicants");
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        final List<ApplicantResult> results = new ArrayList<>(applicants.size());
+        if (applicants.isEmpty()) {
+            return results;
+        }
+        final long startNanos = System.nanoTime();
+        final Semaphore permits = new Semaphore(concurrency);
+        final List<Future<ApplicantResult>> futures = new ArrayList<>(applicants.size());
+        try {
+            for (T applicant : applicants) {
+                futures.add(submit(permits, () -> {
+                    try {
+                        operation.apply(applicant);
+                        return ApplicantResult.ok(idOf.apply(applicant));
+                    } catch (LobbyConnectorException | RuntimeException e) {
+                        return ApplicantResult.failed(idOf.apply(applicant), e);
+                    }
+                }));
+            }
+            for (Future<ApplicantResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LobbyConnectorException("Interrupted while waiting for " + operationName, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            // only has an effect when interrupted
+            cancel(futures);
+            if (isTimingLogEnabled()) {
+                logger.log("{}() of {} applicants took {} milliseconds", operationName, applicants.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            }
+        }
+    }
+
+    private boolean isFanOut(Params params) {
+        return params != null && !multiValuedQueries && params.isMultiValued();
+    }
+
+    /* Starts listings of all combinations of category and state, at most
+       fanOutConcurrency at a time. Returns once the last listing has started. */
+    private FanOut fanOut(Params params) throws LobbyConnectorException {
+        final List<Params> combinations = params.combinations();
+        final Semaphore permits = new Semaphore(fanOutConcurrency);
+        final List<Future<Applicant[]>> listings = new ArrayList<>(combinations.size());
+        try {
+            for (Params combination : combinations) {
+                listings.add(submit(permits, () -> getApplicants(combination)));
+            }
+        } catch (InterruptedException e) {
+            cancel(listings);
+            Thread.currentThread().interrupt();
+            throw new LobbyConnectorException("Interrupted while starting listings", e);
+        }
+        return new FanOut(listings);
+    }
+
+    /* Runs the task on the executor of this connector once a permit is
+       available, blocking the caller until then */
+    private <T> Future<T> submit(Semaphore permits, Callable<T> task) throws InterruptedException {
+        permits.acquire();
+        try {
+            return executor().submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /* Shared by all background work of this connector */
+    synchronized ExecutorService executor() {
+        if (executor == null) {
+            // Threads are only created up to the number of tasks in flight, idle ones expire
+            executor = Executors.newCachedThreadPool(executionMode.newThreadFactory("lobby-connector-worker"));
+        }
+        return executor;
+    }
+
+    private static void cancel(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /* Keeps the first occurrence of each applicant */
+    static Applicant[] mergeDistinct(List<Applicant[]> listings) {
+        final Map<String, Applicant> merged = new LinkedHashMap<>();
+        for (Applicant[] listing : listings) {
+            for (Applicant applicant : listing) {
+                merged.putIfAbsent(applicant.getId(), applicant);
+            }
+        }
+        return merged.values().toArray(new Applicant[0]);
+    }
+
+    private static class FanOut {
+        private final List<Future<Applicant[]>> listings;
+
+        private FanOut(List<Future<Applicant[]>> listings) {
+            this.listings = listings;
+        }
+
+        Applicant[] merge() throws LobbyConnectorException {
+            try {
+                final List<Applicant[]> fetched = new ArrayList<>(listings.size());
+                for (Future<Applicant[]> listing : listings) {
+                    fetched.add(await(listing));
+                }
+                return mergeDistinct(fetched);
+            } finally {
+                cancel(listings);
+            }
+        }
+
+        Stream<Applicant> stream() {
+            final Set<String> seen = new HashSet<>();
+            return listings.stream()
+                    .flatMap(listing -> {
+                        try {
+                            return Arrays.stream(await(listing));
+                        } catch (LobbyConnectorException e) {
+                            throw new UncheckedLobbyConnectorException(e);
+                        }
+                    })
+                    .filter(applicant -> seen.add(applicant.getId()))
+                    .onClose(() -> cancel(listings));
+        }
+
+        private static Applicant[] await(Future<Applicant[]> listing) throws LobbyConnectorException {
+            try {
+                return listing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LobbyConnectorException("Interrupted while waiting for listing", e);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof LobbyConnectorException) {
+                    throw (LobbyConnectorException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private Response sendRequest(Params params) throws LobbyConnectorException {
+        final Response response = execute(newListingRequest(params));
+        assertResponseStatus(response, Response.Status.OK);
+        return response;
+    }
+
+    private Response execute(LobbyRequest request, boolean replayable) {
+        return replayable ? execute(request) : executeOnce(request);
+    }
+
+    /* All requests go through here, applying retries and circuit breaker
+       unless these are handled by a FailSafeHttpClient */
+    private Response execute(LobbyRequest request) {
+        if (failsafe == null) {
+            return executeLimited(request);
+        }
+        retryBudget.deposit();
+        try {
+            return failsafe.get().get(() -> executeLimited(request));
+        } catch (CircuitBreakerOpenException e) {
+            throw new ProcessingException("Lobby service circuit breaker is open", e);
+        }
+    }
+
+    /* An entity which can only be written once is never retried, but its
+       single attempt still passes the circuit breaker and the request limiter */
+    private Response executeOnce(LobbyRequest request) {
+        if (failsafe == null) {
+            return executeLimited(request, true);
+        }
+        retryBudget.deposit();
+        if (circuitBreaker == null) {
+            return executeLimited(request, true);
+        }
+        try {
+            return Failsafe.with(circuitBreaker).get(() -> executeLimited(request, true));
+        } catch (CircuitBreakerOpenException e) {
+            throw new ProcessingException("Lobby service circuit breaker is open", e);
+        }
+    }
+
+    private Response executeLimited(LobbyRequest request) {
+        return executeLimited(request, false);
+    }
+
+    /* Each attempt, retries included, must pass the request limiter if any.
+       Retries handled by a FailSafeHttpClient are not seen here though: its
+       permit covers all attempts, and their duration including retry delays
+       is no measure of lobby service latency, so only the outcome counts. */
+    private Response executeLimited(LobbyRequest request, boolean once) {
+        final RequestLimiter limiter = requestLimiter;
+        if (limiter == null) {
+            return send(request, once);
+        }
+        final RequestLimiter.Permit permit;
+        try {
+            permit = limiter.acquire();
+        } catch (RequestRejectedException e) {
+            LOGGER.warn(e.getMessage());
+            metrics.limiterRejected();
+            throw e;
+        }
+        metrics.limiterWaited(permit.getWaitNanos());
+        final long startNanos = System.nanoTime();
+        Response response = null;
+        try {
+            response = send(request, once);
+            return response;
+        } finally {
+            final boolean overloaded = response == null || response.getStatus() >= 500;
+            if (failsafe == null && !once) {
+                permit.release(overloaded);
+            } else {
+                permit.release(System.nanoTime() - startNanos, overloaded);
+            }
+        }
+    }
+
+    /* A FailSafeHttpClient handles retries itself, so requests must pass through it.
+       An upload which is never retried bypasses it, as its retry policy would rewrite
+       the entity. */
+    private Response send(LobbyRequest request, boolean once) {
+        if (failsafe == null && !once) {
+            return request.toHttpRequest(httpClient).execute();
+        }
+        return request.execute();
+    }
+
+    LobbyRequest newListingRequest(Params params) {
+        if (isFanOut(params)) {
+            throw new IllegalArgumentException(
+                    "Several categories or states require multi-valued queries for this operation");
+        }
+        final LobbyRequest request = LobbyRequest.get(withQueryParams(applicantsTarget, params));
+        if (wireFormat == WireFormat.SMILE) {
+            request.withHeader(HttpHeaders.ACCEPT, ACCEPT_SMILE_OR_JSON);
+        }
+        return request;
+    }
+
+    /* Several values of a param are sent by repeating the query param */
+    static WebTarget withQueryParams(WebTarget target, Params params) {
         if (params != null) {
             for (Map.Entry<String, Object> param : params.entrySet()) {
-                httpGet.withQueryParameter(param.getKey(), param.getValue());
+                if (param.getValue() instanceof Collection) {
+                    target = target.queryParam(param.getKey(), ((Collection<?>) param.getValue()).toArray());
+                } else {
+                    target = target.queryParam(param.getKey(), param.getValue());
+                }
             }
         }
-        final Response response = httpGet.execute();
-        assertResponseStatus(response, Response.Status.OK);
-        return readResponseEntity(response, type);
+        return target;
+    }
+
+    private Applicant[] readApplicants(Response response) throws LobbyConnectorException {
+        return readListing(response, objectMapperProvider::getApplicantsReader, Applicant[].class);
+    }
+
+    private <T> T readListing(Response response, Function<WireFormat, ObjectReader> readers, Class<T> type)
+            throws LobbyConnectorException {
+        final T listing;
+        try (InputStream entityStream = response.readEntity(InputStream.class)) {
+            listing = readers.apply(wireFormatOf(response)).readValue(entityStream);
+        } catch (IOException | ProcessingException e) {
+            throw new LobbyConnectorException("Unable to read applicants from lobby service response", e);
+        }
+        if (listing == null) {
+            throw new LobbyConnectorException(
+                    String.format("Lobby service returned with null-valued %s entity", type.getName()));
+        }
+        return listing;
+    }
+
+    private WireFormat wireFormatOf(Response response) {
+        if (WireFormat.SMILE.isCompatible(response.getMediaType())) {
+            binaryFormatAdvertised = true;
+            return WireFormat.SMILE;
+        }
+        return WireFormat.JSON;
     }
 
-    private <T> T readResponseEntity(Response response, Class<T> type)
+    static <T> T readResponseEntity(Response response, Class<T> type)
             throws LobbyConnectorException {
         final T entity = response.readEntity(type);
         if (entity == null) {
@@ -177,37 +1446,145 @@ public class LobbyConnector {
         return entity;
     }
 
-    private String readErrorResponseMessage(Response response) throws LobbyConnectorException {
+    private static String readErrorResponseMessage(Response response) throws LobbyConnectorException {
         if (response.hasEntity()) {
             return readResponseEntity(response, String.class);
         }
         return "";
     }
 
-    private void assertResponseStatus(Response response, Response.Status... expectedStatus)
+    static void assertResponseStatus(Response response, Response.Status... expectedStatus)
             throws LobbyConnectorException {
-        final Response.Status actualStatus =
-                Response.Status.fromStatusCode(response.getStatus());
-        if (!Arrays.asList(expectedStatus).contains(actualStatus)) {
-            if (actualStatus.getStatusCode() == STATUS_CODE_GONE) {
+        // Not every status code is represented by Response.Status (e.g. 422),
+        // so compare on the numeric code
+        final int actualStatusCode = response.getStatus();
+        for (Response.Status status : expectedStatus) {
+            if (status.getStatusCode() == actualStatusCode) {
+                return;
+            }
+        }
+        // the response is of no further use, and would otherwise keep its pooled connection
+        try {
+            if (actualStatusCode == STATUS_CODE_NOT_FOUND) {
+                throw new LobbyConnectorNotFoundException(readErrorResponseMessage(response));
+            } else if (actualStatusCode == STATUS_CODE_GONE) {
                 throw new LobbyConnectorGoneException(readErrorResponseMessage(response));
-            } else if (actualStatus.getStatusCode() == STATUS_CODE_UNPROCESSABLE_ENTITY) {
+            } else if (actualStatusCode == STATUS_CODE_UNPROCESSABLE_ENTITY) {
                 throw new LobbyConnectorUnprocessableEntityException(readErrorResponseMessage(response));
             } else {
+                final Response.Status actualStatus = Response.Status.fromStatusCode(actualStatusCode);
                 throw new LobbyConnectorUnexpectedStatusCodeException(
                         String.format("Lobby service returned with unexpected status code: %s",
-                                actualStatus),
-                        actualStatus.getStatusCode());
+                                actualStatus != null ? actualStatus : actualStatusCode),
+                        actualStatusCode);
             }
+        } finally {
+            response.close();
         }
     }
 
     void constructBodyLink(Applicant applicant) {
-         applicant.setBodyLink(this.baseUrl + String.format(PATH_GET_APPLICANT_BODY, applicant.getId()));
+        applicant.setBodyLink(bodyLinkPrefix + applicant.getId() + BODY_LINK_SUFFIX);
     }
 
     public void close() {
-        failSafeHttpClient.getClient().close();
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        httpClient.getClient().close();
+    }
+
+    private RequestTimer startTimer(LobbyConnectorMetrics.Operation operation) {
+        return RequestTimer.start(operation, metrics, level, logger);
+    }
+
+    private void recordResponseSize(LobbyConnectorMetrics.Operation operation, Response response) {
+        final int length = response.getLength();
+        if (length >= 0) {
+            metrics.responseSize(operation, length);
+        }
+    }
+
+    private boolean isTimingLogEnabled() {
+        return isTimingLogEnabled(level);
+    }
+
+    static boolean isTimingLogEnabled(TimingLogLevel level) {
+        switch (level) {
+            case TRACE:
+                return LOGGER.isTraceEnabled();
+            case DEBUG:
+                return LOGGER.isDebugEnabled();
+            case WARN:
+                return LOGGER.isWarnEnabled();
+            case ERROR:
+                return LOGGER.isErrorEnabled();
+            case INFO:
+            default:
+                return LOGGER.isInfoEnabled();
+        }
+    }
+
+    /* Reports the latency and outcome of a single operation to the metrics
+       and, when the timing log level is enabled, to the log */
+    static final class RequestTimer {
+        private final LobbyConnectorMetrics.Operation operation;
+        private final LobbyConnectorMetrics metrics;
+        private final TimingLogLevel level;
+        private final LogLevelMethod logger;
+        private final long startNanos = System.nanoTime();
+        private LobbyConnectorMetrics.Outcome outcome = LobbyConnectorMetrics.Outcome.OK;
+
+        private RequestTimer(LobbyConnectorMetrics.Operation operation, LobbyConnectorMetrics metrics,
+                             TimingLogLevel level, LogLevelMethod logger) {
+            this.operation = operation;
+            this.metrics = metrics;
+            this.level = level;
+            this.logger = logger;
+        }
+
+        static RequestTimer start(LobbyConnectorMetrics.Operation operation, LobbyConnectorMetrics metrics,
+                                  TimingLogLevel level, LogLevelMethod logger) {
+            metrics.requestStarted(operation);
+            return new RequestTimer(operation, metrics, level, logger);
+        }
+
+        void failed(Throwable throwable) {
+            outcome = LobbyConnectorMetrics.Outcome.of(throwable);
+        }
+
+        void stop() {
+            final long durationNanos = System.nanoTime() - startNanos;
+            metrics.requestCompleted(operation, outcome, durationNanos);
+            if (isTimingLogEnabled(level)) {
+                logger.log("{}() took {} milliseconds",
+                        operation.getMethodName(), TimeUnit.NANOSECONDS.toMillis(durationNanos));
+            }
+        }
+    }
+
+    static LogLevelMethod logLevelMethod(TimingLogLevel level) {
+        switch (level) {
+            case TRACE:
+                return LOGGER::trace;
+            case DEBUG:
+                return LOGGER::debug;
+            case WARN:
+                return LOGGER::warn;
+            case ERROR:
+                return LOGGER::error;
+            case INFO:
+            default:
+                return LOGGER::info;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ApplicantOperation<T> {
+        void apply(T applicant) throws LobbyConnectorException;
     }
 
     @FunctionalInterface
@@ -218,7 +1595,11 @@ public class LobbyConnector {
     public static class Params extends HashMap<String, Object> {
         public enum Key {
             STATE("state"),
-            CATEGORY("category");
+            CATEGORY("category"),
+            MODIFIED_SINCE("modifiedSince"),
+            LIMIT("limit"),
+            OFFSET("offset"),
+            CURSOR("cursor");
 
             private final String keyName;
 
@@ -245,8 +1626,28 @@ public class LobbyConnector {
             return this;
         }
 
+        /**
+         * @return the state, if exactly one state is selected
+         */
         public Optional<State> getState() {
-            return Optional.ofNullable((State) this.get(Key.STATE));
+            return single(Key.STATE, State.class);
+        }
+
+        /**
+         * Selects applicants in any of the given states
+         * @param states states, or null or empty for all states
+         * @return this params
+         */
+        public Params withStates(Collection<State> states) {
+            putOrRemoveOnNull(Key.STATE, valueOf(states, "states"));
+            return this;
+        }
+
+        /**
+         * @return selected states, empty for all states
+         */
+        public Set<State> getStates() {
+            return all(Key.STATE, State.class);
         }
 
         public Params withCategory(String category) {
@@ -254,8 +1655,138 @@ public class LobbyConnector {
             return this;
         }
 
+        /**
+         * @return the category, if exactly one category is selected
+         */
         public Optional<String> getCategory() {
-            return Optional.ofNullable((String) this.get(Key.CATEGORY));
+            return single(Key.CATEGORY, String.class);
+        }
+
+        /**
+         * Selects applicants in any of the given categories
+         * @param categories categories, or null or empty for all categories
+         * @return this params
+         */
+        public Params withCategories(Collection<String> categories) {
+            putOrRemoveOnNull(Key.CATEGORY, valueOf(categories, "categories"));
+            return this;
+        }
+
+        /**
+         * @return selected categories, empty for all categories
+         */
+        public Set<String> getCategories() {
+            return all(Key.CATEGORY, String.class);
+        }
+
+        /**
+         * Restricts the listing to applicants last modified at or after the given time
+         * @param modifiedSince inclusive lower bound on time of last modification
+         * @return this params
+         */
+        public Params withModifiedSince(Date modifiedSince) {
+            putOrRemoveOnNull(Key.MODIFIED_SINCE, modifiedSince == null ? null : modifiedSince.getTime());
+            return this;
+        }
+
+        public Optional<Date> getModifiedSince() {
+            return Optional.ofNullable((Long) this.get(Key.MODIFIED_SINCE.keyName)).map(Date::new);
+        }
+
+        /**
+         * Restricts the listing to a page of at most the given number of applicants
+         * @param limit maximum number of applicants
+         * @return this params
+         */
+        public Params withLimit(Integer limit) {
+            putOrRemoveOnNull(Key.LIMIT, limit);
+            return this;
+        }
+
+        public Optional<Integer> getLimit() {
+            return Optional.ofNullable((Integer) this.get(Key.LIMIT.keyName));
+        }
+
+        /**
+         * Skips the given number of applicants, for use with {@link #withLimit(Integer)}
+         * @param offset number of applicants to skip
+         * @return this params
+         */
+        public Params withOffset(Integer offset) {
+            putOrRemoveOnNull(Key.OFFSET, offset);
+            return this;
+        }
+
+        public Optional<Integer> getOffset() {
+            return Optional.ofNullable((Integer) this.get(Key.OFFSET.keyName));
+        }
+
+        /**
+         * Continues the listing from a cursor returned by the lobby service,
+         * for use with {@link #withLimit(Integer)}
+         * @param cursor opaque cursor of the page to fetch
+         * @return this params
+         * @see ApplicantPage#getNextCursor()
+         */
+        public Params withCursor(String cursor) {
+            putOrRemoveOnNull(Key.CURSOR, cursor);
+            return this;
+        }
+
+        public Optional<String> getCursor() {
+            return Optional.ofNullable((String) this.get(Key.CURSOR.keyName));
+        }
+
+        boolean isMultiValued() {
+            return get(Key.CATEGORY.keyName) instanceof Set || get(Key.STATE.keyName) instanceof Set;
+        }
+
+        /* Copies of these params for each combination of a single category and state */
+        List<Params> combinations() {
+            final List<Params> combinations = new ArrayList<>();
+            for (Object category : valuesOf(Key.CATEGORY)) {
+                for (Object state : valuesOf(Key.STATE)) {
+                    final Params combination = new Params();
+                    combination.putAll(this);
+                    combination.putOrRemoveOnNull(Key.CATEGORY, category);
+                    combination.putOrRemoveOnNull(Key.STATE, state);
+                    combinations.add(combination);
+                }
+            }
+            return combinations;
+        }
+
+        /* Several values are kept as a set, a single value as is */
+        private static Object valueOf(Collection<?> values, String name) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            final Set<Object> set = new LinkedHashSet<>(values.size());
+            for (Object value : values) {
+                set.add(InvariantUtil.checkNotNullOrThrow(value, name + " element"));
+            }
+            return set.size() == 1 ? set.iterator().next() : Collections.unmodifiableSet(set);
+        }
+
+        /* All values of a key, a single null value when not set */
+        private Collection<?> valuesOf(Key key) {
+            final Object value = get(key.keyName);
+            return value instanceof Set ? (Set<?>) value : Collections.singletonList(value);
+        }
+
+        private <T> Optional<T> single(Key key, Class<T> type) {
+            final Object value = get(key.keyName);
+            return type.isInstance(value) ? Optional.of(type.cast(value)) : Optional.empty();
+        }
+
+        private <T> Set<T> all(Key key, Class<T> type) {
+            final Set<T> values = new LinkedHashSet<>();
+            for (Object value : valuesOf(key)) {
+                if (value != null) {
+                    values.add(type.cast(value));
+                }
+            }
+            return values;
         }
 
         private void putOrRemoveOnNull(Key param, Object value) {
@@ -10,4 +10,8 @@ public class LobbyConnectorException extends Exception {
     public LobbyConnectorException(String msg) {
         super(msg);
     }
+
+    public LobbyConnectorException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
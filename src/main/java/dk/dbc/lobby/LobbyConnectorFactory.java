@@ -13,12 +13,15 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Feature;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
+
 /**
  * LobbyConnector factory
  * <p>
@@ -28,6 +31,9 @@ import org.slf4j.LoggerFactory;
  *    // New instance
  *    LobbyConnector lc = LobbyConnectorFactory.create("http://record-service");
  *
+ *    // New non-blocking instance
+ *    AsyncLobbyConnector alc = LobbyConnectorFactory.createAsync("http://record-service");
+ *
  *    // Singleton instance in CDI enabled environment
  *    {@literal @}Inject
  *    LobbyConnectorFactory factory;
@@ -37,13 +43,56 @@ import org.slf4j.LoggerFactory;
  *    // or simply
  *    {@literal @}Inject
  *    LobbyConnector lc;
+ *
+ *    // metrics of the singleton instance
+ *    {@literal @}Inject
+ *    LobbyConnectorMetrics metrics;
  * </pre>
  * <p>
  * CDI case depends on the lobby service baseurl being defined as
  * the value of either a system property or environment variable
  * named LOBBY_SERVICE_URL. LOBBY_SERVICE_TIMING_LOG_LEVEL
  * should be one of TRACE, DEBUG, INFO(default), WARN or ERROR, for setting
- * log level
+ * log level. LOBBY_BODY_CACHE_MAX_BYTES enables caching of applicant bodies
+ * up to the given total size (default 0, disabled). LOBBY_CONDITIONAL_REQUESTS
+ * enables conditional GET requests for applicant listings (default false).
+ * LOBBY_REQUEST_COALESCING (default false) lets concurrent identical applicant
+ * listings share a single request, and LOBBY_LISTING_CACHE_TTL_MS keeps
+ * their results for the given time (default 0, disabled).
+ * </p>
+ * <p>
+ * The CDI instance uses a pool of kept-alive HTTP connections, tuned by
+ * LOBBY_MAX_CONNECTIONS (default 50), LOBBY_MAX_CONNECTIONS_PER_ROUTE
+ * (default 20), LOBBY_CONNECT_TIMEOUT_MS (default 10000),
+ * LOBBY_READ_TIMEOUT_MS (default 300000), LOBBY_CONNECTION_IDLE_TIMEOUT_MS
+ * (default 30000) and LOBBY_CONNECTION_TIME_TO_LIVE_MS (default 300000).
+ * </p>
+ * <p>
+ * Failed requests are retried with exponential backoff, at most
+ * LOBBY_MAX_RETRIES times (default 6). LOBBY_CIRCUIT_BREAKER_ENABLED
+ * (default true) makes the connector fail fast while the lobby service
+ * keeps failing. See {@link RetryConfig} for the remaining defaults.
+ * </p>
+ * <p>
+ * LOBBY_COMPRESSION (default false) enables gzip/deflate encoded responses,
+ * LOBBY_COMPRESS_REQUESTS (default false) gzip encoded requests as well.
+ * LOBBY_WIRE_FORMAT may be set to SMILE (default JSON) to prefer the binary
+ * Smile format, when supported by the lobby service.
+ * LOBBY_JACKSON_BYTECODE_ACCELERATION (default false) registers the Jackson
+ * Blackbird or Afterburner module, if present on the classpath.
+ * </p>
+ * <p>
+ * LOBBY_REQUESTS_PER_SECOND (default 0, unlimited) caps the request rate,
+ * allowing bursts of LOBBY_REQUEST_BURST requests (default 1), and
+ * LOBBY_ADAPTIVE_CONCURRENCY (default false) enables a concurrency limit
+ * adapting to lobby service latency and errors, bounded by
+ * LOBBY_MAX_CONCURRENCY (default 200). See {@link LimiterConfig}.
+ * </p>
+ * <p>
+ * LOBBY_EXECUTION_MODE may be set to VIRTUAL_THREADS (default
+ * PLATFORM_THREADS) to run batch helpers and page prefetching on virtual
+ * threads, when running on Java 21 or later. Note that LOBBY_MAX_CONNECTIONS
+ * still bounds the number of requests actually in flight.
  * </p>
  */
 @ApplicationScoped
@@ -51,19 +100,131 @@ public class LobbyConnectorFactory {
     private static final Logger LOGGER = LoggerFactory.getLogger(LobbyConnectorFactory.class);
 
     public static LobbyConnector create(String lobbyServiceBaseUrl) {
-        final Client client = HttpClient.newClient(new ClientConfig()
-                .register(new JacksonFeature()));
+        final Client client = HttpClient.newClient(newClientConfig(ObjectMapperProvider.getDefault()));
         LOGGER.info("Creating LobbyConnector for: {}", lobbyServiceBaseUrl);
         return new LobbyConnector(client, lobbyServiceBaseUrl);
     }
 
     public static LobbyConnector create(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level) {
-        final Client client = HttpClient.newClient(new ClientConfig()
-                .register(new JacksonFeature()));
+        final Client client = HttpClient.newClient(newClientConfig(ObjectMapperProvider.getDefault()));
         LOGGER.info("Creating LobbyConnector for: {}", lobbyServiceBaseUrl);
         return new LobbyConnector(client, lobbyServiceBaseUrl, level);
     }
 
+    public static LobbyConnector create(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                        LobbyConnectorMetrics metrics) {
+        final Client client = HttpClient.newClient(newClientConfig(ObjectMapperProvider.getDefault()));
+        LOGGER.info("Creating LobbyConnector for: {}", lobbyServiceBaseUrl);
+        return new LobbyConnector(client, lobbyServiceBaseUrl, level, metrics);
+    }
+
+    /**
+     * Creates connector using a pool of kept-alive HTTP connections
+     * @param lobbyServiceBaseUrl base URL for lobby service endpoint
+     * @param level               timings log level
+     * @param metrics             metrics, also receiving the connection pool statistics
+     * @param connectionPoolConfig connection pool and timeout settings
+     * @return new connector instance
+     */
+    public static LobbyConnector create(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                        LobbyConnectorMetrics metrics, ConnectionPoolConfig connectionPoolConfig) {
+        return create(lobbyServiceBaseUrl, level, metrics, connectionPoolConfig, new RetryConfig());
+    }
+
+    /**
+     * Creates connector using a pool of kept-alive HTTP connections and custom retry settings
+     * @param lobbyServiceBaseUrl  base URL for lobby service endpoint
+     * @param level                timings log level
+     * @param metrics              metrics, also receiving the connection pool statistics
+     * @param connectionPoolConfig connection pool and timeout settings
+     * @param retryConfig          retry, retry budget and circuit breaker settings
+     * @param features             additional client features, for instance {@link CompressionFeature}
+     * @return new connector instance
+     */
+    public static LobbyConnector create(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                        LobbyConnectorMetrics metrics, ConnectionPoolConfig connectionPoolConfig,
+                                        RetryConfig retryConfig, Feature... features) {
+        return create(lobbyServiceBaseUrl, level, metrics, connectionPoolConfig, retryConfig,
+                ObjectMapperProvider.getDefault(), features);
+    }
+
+    /**
+     * Creates connector using a pool of kept-alive HTTP connections, custom retry
+     * settings and custom Jackson configuration
+     * @param lobbyServiceBaseUrl  base URL for lobby service endpoint
+     * @param level                timings log level
+     * @param metrics              metrics, also receiving the connection pool statistics
+     * @param connectionPoolConfig connection pool and timeout settings
+     * @param retryConfig          retry, retry budget and circuit breaker settings
+     * @param objectMapperProvider Jackson configuration
+     * @param features             additional client features, for instance {@link CompressionFeature}
+     * @return new connector instance
+     */
+    public static LobbyConnector create(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                        LobbyConnectorMetrics metrics, ConnectionPoolConfig connectionPoolConfig,
+                                        RetryConfig retryConfig, ObjectMapperProvider objectMapperProvider,
+                                        Feature... features) {
+        final ClientConfig clientConfig = newClientConfig(objectMapperProvider);
+        for (Feature feature : features) {
+            clientConfig.register(feature);
+        }
+        metrics.connectionPool(PooledConnectionManager.configure(clientConfig, connectionPoolConfig));
+        final Client client = HttpClient.newClient(clientConfig);
+        LOGGER.info("Creating LobbyConnector for: {} with {} and {}", lobbyServiceBaseUrl,
+                connectionPoolConfig, retryConfig);
+        return new LobbyConnector(client, lobbyServiceBaseUrl, level, metrics, retryConfig)
+                .withObjectMapperProvider(objectMapperProvider);
+    }
+
+    public static AsyncLobbyConnector createAsync(String lobbyServiceBaseUrl) {
+        return createAsync(lobbyServiceBaseUrl, TimingLogLevel.INFO);
+    }
+
+    public static AsyncLobbyConnector createAsync(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level) {
+        return createAsync(lobbyServiceBaseUrl, level, new RetryConfig());
+    }
+
+    /**
+     * Returns non-blocking connector with custom retry, retry budget and circuit breaker settings
+     *
+     * @param lobbyServiceBaseUrl base URL for lobby service endpoint
+     * @param level               timings log level
+     * @param retryConfig         retry, retry budget and circuit breaker settings
+     * @return async lobby connector
+     */
+    public static AsyncLobbyConnector createAsync(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                                  RetryConfig retryConfig) {
+        return createAsync(lobbyServiceBaseUrl, level, LobbyConnectorMetrics.NOOP, retryConfig);
+    }
+
+    /**
+     * Returns non-blocking connector with custom retry settings, reporting to the given metrics
+     * <p>
+     * Non-blocking connectors always use JSON and have neither request limiter
+     * nor request coalescing, so LOBBY_WIRE_FORMAT, LOBBY_REQUESTS_PER_SECOND,
+     * LOBBY_ADAPTIVE_CONCURRENCY and LOBBY_REQUEST_COALESCING have no counterpart
+     * here. See {@link AsyncLobbyConnector}.
+     * </p>
+     *
+     * @param lobbyServiceBaseUrl base URL for lobby service endpoint
+     * @param level               timings log level
+     * @param metrics             metrics receiving timings, outcomes, retries and circuit breaker state
+     * @param retryConfig         retry, retry budget and circuit breaker settings
+     * @return async lobby connector
+     */
+    public static AsyncLobbyConnector createAsync(String lobbyServiceBaseUrl, LobbyConnector.TimingLogLevel level,
+                                                  LobbyConnectorMetrics metrics, RetryConfig retryConfig) {
+        final Client client = HttpClient.newClient(newClientConfig(ObjectMapperProvider.getDefault()));
+        LOGGER.info("Creating AsyncLobbyConnector for: {} with {}", lobbyServiceBaseUrl, retryConfig);
+        return new AsyncLobbyConnector(client, lobbyServiceBaseUrl, level, metrics, retryConfig);
+    }
+
+    private static ClientConfig newClientConfig(ObjectMapperProvider objectMapperProvider) {
+        return new ClientConfig()
+                .register(new JacksonFeature())
+                .register(objectMapperProvider);
+    }
+
     @Inject
     @ConfigProperty(name = "LOBBY_SERVICE_URL")
     private String lobbyServiceUrl;
@@ -72,11 +233,127 @@ public class LobbyConnectorFactory {
     @ConfigProperty(name = "LOBBY_LOG_LEVEL", defaultValue = "INFO")
     private TimingLogLevel level;
 
+    @Inject
+    @ConfigProperty(name = "LOBBY_BODY_CACHE_MAX_BYTES", defaultValue = "0")
+    private long bodyCacheMaxBytes;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_CONDITIONAL_REQUESTS", defaultValue = "false")
+    private boolean conditionalRequests;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_REQUEST_COALESCING", defaultValue = "false")
+    private boolean requestCoalescing;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_LISTING_CACHE_TTL_MS", defaultValue = "0")
+    private long listingCacheTtlMs;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_MAX_CONNECTIONS", defaultValue = "50")
+    private int maxConnections;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_MAX_CONNECTIONS_PER_ROUTE", defaultValue = "20")
+    private int maxConnectionsPerRoute;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_CONNECT_TIMEOUT_MS", defaultValue = "10000")
+    private long connectTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_READ_TIMEOUT_MS", defaultValue = "300000")
+    private long readTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_CONNECTION_IDLE_TIMEOUT_MS", defaultValue = "30000")
+    private long connectionIdleTimeoutMs;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_CONNECTION_TIME_TO_LIVE_MS", defaultValue = "300000")
+    private long connectionTimeToLiveMs;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_MAX_RETRIES", defaultValue = "6")
+    private int maxRetries;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_CIRCUIT_BREAKER_ENABLED", defaultValue = "true")
+    private boolean circuitBreakerEnabled;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_COMPRESSION", defaultValue = "false")
+    private boolean compression;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_COMPRESS_REQUESTS", defaultValue = "false")
+    private boolean compressRequests;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_WIRE_FORMAT", defaultValue = "JSON")
+    private WireFormat wireFormat;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_REQUESTS_PER_SECOND", defaultValue = "0")
+    private double requestsPerSecond;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_REQUEST_BURST", defaultValue = "1")
+    private int requestBurst;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_ADAPTIVE_CONCURRENCY", defaultValue = "false")
+    private boolean adaptiveConcurrency;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_MAX_CONCURRENCY", defaultValue = "200")
+    private int maxConcurrency;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_EXECUTION_MODE", defaultValue = "PLATFORM_THREADS")
+    private ExecutionMode executionMode;
+
+    @Inject
+    @ConfigProperty(name = "LOBBY_JACKSON_BYTECODE_ACCELERATION", defaultValue = "false")
+    private boolean jacksonBytecodeAcceleration;
+
     LobbyConnector lobbyConnector;
+    DefaultLobbyConnectorMetrics metrics;
 
     @PostConstruct
     public void initializeConnector() {
-        lobbyConnector = LobbyConnectorFactory.create(lobbyServiceUrl, level);
+        metrics = new DefaultLobbyConnectorMetrics();
+        lobbyConnector = LobbyConnectorFactory.create(lobbyServiceUrl, level, metrics, new ConnectionPoolConfig()
+                .withMaxConnections(maxConnections)
+                .withMaxConnectionsPerRoute(maxConnectionsPerRoute)
+                .withConnectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .withReadTimeout(Duration.ofMillis(readTimeoutMs))
+                .withIdleTimeout(Duration.ofMillis(connectionIdleTimeoutMs))
+                .withTimeToLive(Duration.ofMillis(connectionTimeToLiveMs)), new RetryConfig()
+                .withMaxRetries(maxRetries)
+                .withCircuitBreakerEnabled(circuitBreakerEnabled),
+                jacksonBytecodeAcceleration ? new ObjectMapperProvider(true) : ObjectMapperProvider.getDefault(),
+                compression || compressRequests
+                        ? new Feature[] {new CompressionFeature(compressRequests)}
+                        : new Feature[0])
+                .withWireFormat(wireFormat)
+                .withExecutionMode(executionMode);
+        if (bodyCacheMaxBytes > 0) {
+            lobbyConnector.withBodyCache(new ApplicantBodyCache(bodyCacheMaxBytes));
+        }
+        if (conditionalRequests) {
+            lobbyConnector.withConditionalRequestCache(new ConditionalRequestCache());
+        }
+        if (requestsPerSecond > 0 || adaptiveConcurrency) {
+            lobbyConnector.withRequestLimiter(new RequestLimiter(new LimiterConfig()
+                    .withRequestsPerSecond(requestsPerSecond)
+                    .withBurst(requestBurst)
+                    .withAdaptiveConcurrency(adaptiveConcurrency)
+                    .withMaxConcurrency(maxConcurrency)));
+        }
+        if (requestCoalescing || listingCacheTtlMs > 0) {
+            lobbyConnector.withRequestCoalescer(new RequestCoalescer(Duration.ofMillis(listingCacheTtlMs)));
+        }
     }
 
     @Produces
@@ -84,6 +361,15 @@ public class LobbyConnectorFactory {
         return lobbyConnector;
     }
 
+    /**
+     * @return metrics of the singleton connector instance, for exporting
+     * through the metrics system of the application
+     */
+    @Produces
+    public LobbyConnectorMetrics getMetrics() {
+        return metrics;
+    }
+
     @PreDestroy
     public void tearDownConnector() {
         lobbyConnector.close();
@@ -0,0 +1,154 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+/**
+ * Metrics surface of {@link LobbyConnector}
+ * <p>
+ * All methods have no-op defaults, so implementations bridging to a metrics
+ * library only need to override what they are interested in.
+ * {@link DefaultLobbyConnectorMetrics} is a dependency-free in-memory
+ * implementation.
+ * </p>
+ */
+public interface LobbyConnectorMetrics {
+    LobbyConnectorMetrics NOOP = new LobbyConnectorMetrics() {};
+
+    enum Operation {
+        GET_APPLICANTS("getApplicants"),
+        GET_APPLICANTS_PAGE("getApplicantsPage"),
+        GET_APPLICANT_VIEWS("getApplicantViews"),
+        STREAM_APPLICANTS("streamApplicants"),
+        CREATE_OR_REPLACE_APPLICANT("createOrReplaceApplicant"),
+        CHANGE_APPLICANT_STATE("changeApplicantState"),
+        GET_APPLICANT_BODY("getApplicantBody");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    enum CircuitBreakerState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    enum Outcome {
+        OK, GONE, UNPROCESSABLE_ENTITY, OTHER_STATUS, PROCESSING_EXCEPTION;
+
+        static Outcome of(Throwable throwable) {
+            if (throwable instanceof LobbyConnectorGoneException) {
+                return GONE;
+            }
+            if (throwable instanceof LobbyConnectorUnprocessableEntityException) {
+                return UNPROCESSABLE_ENTITY;
+            }
+            if (throwable instanceof LobbyConnectorUnexpectedStatusCodeException) {
+                return OTHER_STATUS;
+            }
+            return PROCESSING_EXCEPTION;
+        }
+    }
+
+    /**
+     * Called when an operation starts
+     * @param operation connector operation
+     */
+    default void requestStarted(Operation operation) {}
+
+    /**
+     * Called when an operation completes, successfully or not
+     * @param operation     connector operation
+     * @param outcome       operation outcome
+     * @param durationNanos operation latency including retries
+     */
+    default void requestCompleted(Operation operation, Outcome outcome, long durationNanos) {}
+
+    /**
+     * Called each time a request is retried by the retry policy
+     */
+    default void retried() {}
+
+    /**
+     * Called when a retry is abandoned because the retry budget is exhausted
+     */
+    default void retryBudgetExhausted() {}
+
+    /**
+     * Called once when the connector is created with a retry budget
+     * @param retryBudget live view of the retry budget, suitable for gauges
+     */
+    default void retryBudget(RetryBudget retryBudget) {}
+
+    /**
+     * Called when the circuit breaker changes state
+     * @param state new state
+     */
+    default void circuitBreakerStateChanged(CircuitBreakerState state) {}
+
+    /**
+     * Called once when a request limiter is set on the connector
+     * @param requestLimiter live view of the limiter, suitable for gauges
+     */
+    default void requestLimiter(RequestLimiter requestLimiter) {}
+
+    /**
+     * Called each time a request attempt passes the request limiter
+     * @param waitNanos time spent waiting for the limiter
+     */
+    default void limiterWaited(long waitNanos) {}
+
+    /**
+     * Called each time a request attempt is rejected by the request limiter
+     */
+    default void limiterRejected() {}
+
+    /**
+     * Called each time buffered applicant writes are replaced by a later
+     * write of the same applicant in a {@link WriteCoalescingBuffer}
+     * @param count number of writes collapsed
+     */
+    default void applicantWritesCollapsed(int count) {}
+
+    /**
+     * Called when an {@link ApplicantFingerprintIndex} is set on a connector,
+     * allowing implementations to expose its size and memory footprint
+     * @param fingerprintIndex fingerprint index
+     */
+    default void fingerprintIndex(ApplicantFingerprintIndex fingerprintIndex) {}
+
+    /**
+     * Called each time applicant writes are skipped as unchanged by an
+     * {@link ApplicantFingerprintIndex}
+     * @param count number of writes skipped
+     */
+    default void applicantWritesSkipped(int count) {}
+
+    /**
+     * Called with the size of a response payload when known
+     * @param operation connector operation
+     * @param bytes     payload size in bytes
+     */
+    default void responseSize(Operation operation, long bytes) {}
+
+    /**
+     * Called with the number of applicants returned by a listing
+     * @param operation connector operation
+     * @param count     number of applicants
+     */
+    default void applicantsListed(Operation operation, int count) {}
+
+    /**
+     * Called once when the connector is created with a connection pool
+     * @param stats live view of the connection pool, suitable for gauges
+     */
+    default void connectionPool(ConnectionPoolStats stats) {}
+}
@@ -0,0 +1,9 @@
+package dk.dbc.lobby;
+
+public class LobbyConnectorNotFoundException extends LobbyConnectorUnexpectedStatusCodeException {
+
+    public LobbyConnectorNotFoundException(String message) {
+        super(message, 404);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import dk.dbc.httpclient.HttpGet;
+import dk.dbc.httpclient.HttpPut;
+import dk.dbc.httpclient.HttpRequest;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * GET or PUT on a target derived from the targets a {@link LobbyConnector}
+ * resolves once
+ * <p>
+ * Requests are issued directly on their target, except when retries are
+ * handled by a {@link dk.dbc.httpclient.FailSafeHttpClient}, which needs
+ * requests to be passed through it as {@link HttpRequest}s.
+ * </p>
+ */
+final class LobbyRequest {
+    private final WebTarget target;
+    private final Entity<?> entity;
+    private Map<String, String> headers;
+
+    private LobbyRequest(WebTarget target, Entity<?> entity) {
+        this.target = target;
+        this.entity = entity;
+    }
+
+    static LobbyRequest get(WebTarget target) {
+        return new LobbyRequest(target, null);
+    }
+
+    static LobbyRequest put(WebTarget target, Object data, String mediaType) {
+        return new LobbyRequest(target, Entity.entity(data, mediaType));
+    }
+
+    LobbyRequest withHeader(String name, String value) {
+        if (headers == null) {
+            headers = new LinkedHashMap<>(4);
+        }
+        headers.put(name, value);
+        return this;
+    }
+
+    WebTarget getTarget() {
+        return target;
+    }
+
+    /* Single attempt, repeated by the connector on retries */
+    Response execute() {
+        final Invocation.Builder builder = target.request();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        return entity == null ? builder.get() : builder.put(entity);
+    }
+
+    HttpRequest<?> toHttpRequest(HttpClient httpClient) {
+        final String url = target.getUri().toString();
+        final HttpRequest<?> request = entity == null
+                ? new HttpGet(httpClient).withBaseUrl(url)
+                : new HttpPut(httpClient).withBaseUrl(url)
+                        .withData(entity.getEntity(), entity.getMediaType().toString());
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.withHeader(header.getKey(), header.getValue());
+            }
+        }
+        return request;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import jakarta.ws.rs.ext.ContextResolver;
+import jakarta.ws.rs.ext.Provider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Single source of the Jackson configuration used for lobby applicants
+ * <p>
+ * Creating readers and writers is relatively expensive, so those for
+ * {@link Applicant}, {@code Applicant[]} and {@code ApplicantView[]} are created once per wire format
+ * and reused. Registering the provider on the JAX-RS client makes Jersey use
+ * the same mapper:
+ * </p>
+ * <pre>
+ *    Client client = HttpClient.newClient(new ClientConfig()
+ *            .register(new JacksonFeature())
+ *            .register(ObjectMapperProvider.getDefault()));
+ * </pre>
+ * <p>
+ * With bytecode acceleration the Blackbird module, or failing that the
+ * Afterburner module, is registered if found on the classpath, replacing
+ * reflection with generated accessors. Blackbird is an optional dependency
+ * of the connector, so applications opting in must depend on
+ * com.fasterxml.jackson.module:jackson-module-blackbird themselves.
+ * </p>
+ */
+@Provider
+public class ObjectMapperProvider implements ContextResolver<ObjectMapper> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectMapperProvider.class);
+    private static final String[] BYTECODE_MODULES = {
+            "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+            "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+    };
+    private static final ObjectMapperProvider DEFAULT = new ObjectMapperProvider();
+
+    private final ObjectMapper objectMapper;
+    private final Map<WireFormat, ObjectMapper> objectMappers = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, ObjectReader> applicantReaders = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, ObjectReader> applicantsReaders = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, ObjectWriter> applicantWriters = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, ObjectReader> applicantViewsReaders = new EnumMap<>(WireFormat.class);
+
+    /**
+     * @return shared instance without bytecode acceleration
+     */
+    public static ObjectMapperProvider getDefault() {
+        return DEFAULT;
+    }
+
+    public ObjectMapperProvider() {
+        this(false);
+    }
+
+    /**
+     * @param bytecodeAcceleration whether to register Blackbird or Afterburner if available
+     */
+    public ObjectMapperProvider(boolean bytecodeAcceleration) {
+        objectMapper = newObjectMapper(WireFormat.JSON, bytecodeAcceleration);
+        for (WireFormat wireFormat : WireFormat.values()) {
+            final ObjectMapper mapper = wireFormat == WireFormat.JSON
+                    ? objectMapper
+                    : newObjectMapper(wireFormat, bytecodeAcceleration);
+            objectMappers.put(wireFormat, mapper);
+            applicantReaders.put(wireFormat, mapper.readerFor(Applicant.class));
+            applicantsReaders.put(wireFormat, mapper.readerFor(Applicant[].class));
+            applicantViewsReaders.put(wireFormat, mapper.readerFor(ApplicantView[].class));
+            applicantWriters.put(wireFormat, mapper.writerFor(Applicant.class)
+                    // the target stream belongs to the caller
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        }
+    }
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return objectMapper;
+    }
+
+    /**
+     * @return JSON mapper. Do not reconfigure, the mapper is shared.
+     */
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * @param wireFormat wire format
+     * @return mapper for the given wire format. Do not reconfigure, the mapper is shared.
+     */
+    public ObjectMapper getObjectMapper(WireFormat wireFormat) {
+        return objectMappers.get(wireFormat);
+    }
+
+    public ObjectReader getApplicantReader(WireFormat wireFormat) {
+        return applicantReaders.get(wireFormat);
+    }
+
+    public ObjectReader getApplicantsReader(WireFormat wireFormat) {
+        return applicantsReaders.get(wireFormat);
+    }
+
+    public ObjectReader getApplicantViewsReader(WireFormat wireFormat) {
+        return applicantViewsReaders.get(wireFormat);
+    }
+
+    public ObjectWriter getApplicantWriter(WireFormat wireFormat) {
+        return applicantWriters.get(wireFormat);
+    }
+
+    private static ObjectMapper newObjectMapper(WireFormat wireFormat, boolean bytecodeAcceleration) {
+        final ObjectMapper mapper = wireFormat == WireFormat.SMILE
+                ? new ObjectMapper(new SmileFactory())
+                : new ObjectMapper();
+        if (bytecodeAcceleration) {
+            registerBytecodeModule(mapper);
+        }
+        return mapper;
+    }
+
+    private static void registerBytecodeModule(ObjectMapper mapper) {
+        for (String moduleClassName : BYTECODE_MODULES) {
+            try {
+                mapper.registerModule((Module) Class.forName(moduleClassName)
+                        .getDeclaredConstructor().newInstance());
+                return;
+            } catch (ClassNotFoundException e) {
+                // try the next one
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOGGER.warn("Unable to register Jackson module {}", moduleClassName, e);
+            }
+        }
+        LOGGER.warn("Jackson bytecode acceleration requested, but neither Blackbird nor Afterburner found");
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Iterator over a paged applicant listing
+ * <p>
+ * Pages are fetched by {@link LobbyConnector#getApplicantsPage(LobbyConnector.Params)}
+ * on a worker thread of the connector, so that the next page is transferred while the
+ * caller processes the current one. The next page is selected by the cursor
+ * returned by the lobby service if any, otherwise by offset. The listing ends
+ * with the first page holding fewer applicants than the page size.
+ * </p>
+ * <p>
+ * A lobby service ignoring the limit or offset params would otherwise make
+ * the listing repeat forever. The listing therefore also ends with a page
+ * holding more applicants than the page size, and before a page selected by
+ * offset which starts with the same applicant as the previous page.
+ * </p>
+ * <p>
+ * If a page can not be fetched, {@link #hasNext()} or {@link #next()} throws
+ * {@link UncheckedLobbyConnectorException} and calling either again fetches
+ * only the failed page, continuing the listing where it stopped.
+ * </p>
+ * <p>
+ * Instances are not thread safe and must be closed if abandoned before
+ * being exhausted.
+ * </p>
+ * <pre>
+ *    try (PagedApplicantIterator applicants = lobbyConnector.iterateApplicants(params, 1000)) {
+ *        while (applicants.hasNext()) {
+ *            Applicant applicant = applicants.next();
+ *            ...
+ *        }
+ *    }
+ * </pre>
+ */
+public class PagedApplicantIterator implements Iterator<Applicant>, AutoCloseable {
+    private static final Applicant[] NO_APPLICANTS = new Applicant[0];
+
+    private final LobbyConnector connector;
+    private final int pageSize;
+    private LobbyConnector.Params nextPageParams;
+    private Future<ApplicantPage> nextPage;
+    private Applicant[] page = NO_APPLICANTS;
+    private int position;
+    private int pages;
+
+    /**
+     * @param connector lobby connector
+     * @param params    listing params, optionally with an offset or cursor to start from
+     * @param pageSize  maximum number of applicants per page
+     */
+    public PagedApplicantIterator(LobbyConnector connector, LobbyConnector.Params params, int pageSize) {
+        this.connector = InvariantUtil.checkNotNullOrThrow(connector, "connector");
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+        nextPageParams = new LobbyConnector.Params();
+        if (params != null) {
+            nextPageParams.putAll(params);
+        }
+        nextPageParams.withLimit(pageSize);
+        prefetch();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (position >= page.length) {
+            if (nextPageParams == null) {
+                return false;
+            }
+            if (nextPage == null) {
+                // previous attempt failed
+                prefetch();
+            }
+            final ApplicantPage fetched = awaitNextPage();
+            if (repeatsPreviousPage(fetched)) {
+                nextPageParams = null;
+                return false;
+            }
+            pages++;
+            page = fetched.getApplicants();
+            position = 0;
+            nextPageParams = paramsOfPageAfter(nextPageParams, fetched);
+            if (nextPageParams != null) {
+                prefetch();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Applicant next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page[position++];
+    }
+
+    /**
+     * @return number of pages fetched so far
+     */
+    public int getPageCount() {
+        return pages;
+    }
+
+    /**
+     * Cancels any pending page request
+     */
+    @Override
+    public void close() {
+        nextPageParams = null;
+        if (nextPage != null) {
+            nextPage.cancel(true);
+            nextPage = null;
+        }
+        page = NO_APPLICANTS;
+    }
+
+    private void prefetch() {
+        final LobbyConnector.Params params = nextPageParams;
+        nextPage = connector.executor().submit(() -> connector.getApplicantsPage(params));
+    }
+
+    private ApplicantPage awaitNextPage() {
+        try {
+            return nextPage.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedLobbyConnectorException(
+                    new LobbyConnectorException("Interrupted while waiting for applicants page", e));
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof LobbyConnectorException) {
+                throw new UncheckedLobbyConnectorException((LobbyConnectorException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UncheckedLobbyConnectorException(
+                    new LobbyConnectorException("Unable to fetch applicants page", cause));
+        } finally {
+            nextPage = null;
+        }
+    }
+
+    /* Only called while the exhausted previous page is still held */
+    private boolean repeatsPreviousPage(ApplicantPage fetched) {
+        final Applicant[] applicants = fetched.getApplicants();
+        return !nextPageParams.getCursor().isPresent() && page.length > 0 && applicants.length > 0
+                && Objects.equals(page[0].getId(), applicants[0].getId());
+    }
+
+    private LobbyConnector.Params paramsOfPageAfter(LobbyConnector.Params params, ApplicantPage fetched) {
+        final int count = fetched.getApplicants().length;
+        if (fetched.getNextCursor() != null) {
+            if (count == 0) {
+                return null;
+            }
+            final LobbyConnector.Params next = new LobbyConnector.Params();
+            next.putAll(params);
+            return next.withOffset(null).withCursor(fetched.getNextCursor());
+        }
+        // more than a page means the limit was ignored and the listing is complete
+        if (count != pageSize || params.getCursor().isPresent()) {
+            return null;
+        }
+        final LobbyConnector.Params next = new LobbyConnector.Params();
+        next.putAll(params);
+        return next.withOffset(params.getOffset().orElse(0) + count);
+    }
+}
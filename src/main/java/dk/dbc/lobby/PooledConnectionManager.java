@@ -0,0 +1,119 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectionClosingStrategy;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientLifecycleListener;
+import org.glassfish.jersey.client.ClientProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooling Apache HTTP client connection manager for a Jersey client
+ * <p>
+ * Registered with the client configuration, it evicts idle connections in
+ * the background for as long as the client is open.
+ * </p>
+ * <p>
+ * Jersey's default closing strategies abort chunked responses, throwing the
+ * connection away, so responses are instead closed by draining the entity
+ * stream, which returns the connection to the pool.
+ * </p>
+ * <p>
+ * Waiting for a connection when all are in use is bounded by the lease
+ * timeout, so that leaked connections surface as failing requests rather
+ * than as callers blocked forever.
+ * </p>
+ */
+class PooledConnectionManager implements ClientLifecycleListener, ConnectionPoolStats {
+    private static final ApacheConnectionClosingStrategy DRAINING_CLOSING_STRATEGY =
+            (clientRequest, request, response, stream) -> {
+                try {
+                    stream.close();
+                } finally {
+                    response.close();
+                }
+            };
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor idleConnectionEvictor;
+
+    private PooledConnectionManager(ConnectionPoolConfig config) {
+        connectionManager = new PoolingHttpClientConnectionManager(
+                config.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(config.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+        idleConnectionEvictor = new IdleConnectionEvictor(connectionManager,
+                config.getIdleTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Configures the given client configuration to use a connection pool
+     * @param clientConfig client configuration
+     * @param config       connection pool settings
+     * @return live statistics of the connection pool
+     */
+    static ConnectionPoolStats configure(ClientConfig clientConfig, ConnectionPoolConfig config) {
+        final PooledConnectionManager pooledConnectionManager = new PooledConnectionManager(config);
+        clientConfig.connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, pooledConnectionManager.connectionManager)
+                .property(ApacheClientProperties.CONNECTION_CLOSING_STRATEGY, DRAINING_CLOSING_STRATEGY)
+                .property(ApacheClientProperties.REQUEST_CONFIG, RequestConfig.custom()
+                        .setConnectionRequestTimeout((int) config.getLeaseTimeout().toMillis())
+                        .build())
+                .property(ClientProperties.CONNECT_TIMEOUT, (int) config.getConnectTimeout().toMillis())
+                .property(ClientProperties.READ_TIMEOUT, (int) config.getReadTimeout().toMillis())
+                .register(pooledConnectionManager);
+        return pooledConnectionManager;
+    }
+
+    @Override
+    public void onInit() {
+        idleConnectionEvictor.start();
+    }
+
+    @Override
+    public void onClose() {
+        idleConnectionEvictor.shutdown();
+        connectionManager.shutdown();
+    }
+
+    @Override
+    public int getLeased() {
+        return stats().getLeased();
+    }
+
+    @Override
+    public int getAvailable() {
+        return stats().getAvailable();
+    }
+
+    @Override
+    public int getPending() {
+        return stats().getPending();
+    }
+
+    @Override
+    public int getMax() {
+        return stats().getMax();
+    }
+
+    private PoolStats stats() {
+        return connectionManager.getTotalStats();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{" + stats() + '}';
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight coalescing of concurrent identical applicant listings
+ * <p>
+ * While a listing for a given set of {@link LobbyConnector.Params} is in
+ * flight, further calls with equal params wait for and share its result
+ * instead of issuing requests of their own. Failures are shared the same way.
+ * </p>
+ * <p>
+ * Optionally completed listings are kept for a short time to live, during
+ * which calls with equal params are answered without contacting the lobby
+ * service at all. Cached listings are dropped whenever the connector
+ * creates or replaces an applicant.
+ * </p>
+ * <p>
+ * Callers get their own array, but the {@link Applicant} instances in it
+ * are shared and should not be modified.
+ * </p>
+ */
+public class RequestCoalescer {
+    private final long timeToLiveNanos;
+    private final Map<Map<String, Object>, CompletableFuture<Applicant[]>> inFlight = new ConcurrentHashMap<>();
+    private final Map<Map<String, Object>, CachedListing> cache = new ConcurrentHashMap<>();
+    // bumped by invalidate, listings started before are not cached
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * Coalesces concurrent calls without caching completed listings
+     */
+    public RequestCoalescer() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param timeToLive time to keep completed listings, zero disables caching
+     */
+    public RequestCoalescer(Duration timeToLive) {
+        InvariantUtil.checkNotNullOrThrow(timeToLive, "timeToLive");
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("timeToLive can not be negative");
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    Applicant[] get(LobbyConnector.Params params, Loader loader) throws LobbyConnectorException {
+        final Map<String, Object> key = keyOf(params);
+        if (timeToLiveNanos > 0) {
+            final CachedListing cached = cache.get(key);
+            if (cached != null) {
+                if (cached.expiresAtNanos - System.nanoTime() > 0) {
+                    cacheHits.incrementAndGet();
+                    return cached.applicants.clone();
+                }
+                cache.remove(key, cached);
+            }
+        }
+        final CompletableFuture<Applicant[]> flight = new CompletableFuture<>();
+        final CompletableFuture<Applicant[]> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            return await(leader).clone();
+        }
+        issued.incrementAndGet();
+        final long startGeneration = generation.get();
+        try {
+            final Applicant[] applicants = loader.load();
+            if (timeToLiveNanos > 0 && generation.get() == startGeneration) {
+                final CachedListing listing = new CachedListing(applicants, System.nanoTime() + timeToLiveNanos);
+                cache.put(key, listing);
+                // checked again, as invalidate may have run concurrently
+                if (generation.get() != startGeneration) {
+                    cache.remove(key, listing);
+                }
+            }
+            flight.complete(applicants);
+            return applicants.clone();
+        } catch (LobbyConnectorException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Drops all cached listings. Listings already in flight complete for
+     * their current callers, but are neither cached nor shared with later calls.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        inFlight.clear();
+        cache.clear();
+    }
+
+    /**
+     * @return number of listings requested from the lobby service
+     */
+    public long getIssued() {
+        return issued.get();
+    }
+
+    /**
+     * @return number of calls that shared the result of a listing in flight
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return number of calls answered from cached listings
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLiveNanos);
+    }
+
+    private static Applicant[] await(CompletableFuture<Applicant[]> leader) throws LobbyConnectorException {
+        try {
+            return leader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LobbyConnectorException("Interrupted while waiting for coalesced getApplicants", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof LobbyConnectorException) {
+                throw (LobbyConnectorException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static Map<String, Object> keyOf(LobbyConnector.Params params) {
+        return params == null ? Map.of() : new HashMap<>(params);
+    }
+
+    interface Loader {
+        Applicant[] load() throws LobbyConnectorException;
+    }
+
+    private static class CachedListing {
+        private final Applicant[] applicants;
+        private final long expiresAtNanos;
+
+        private CachedListing(Applicant[] applicants, long expiresAtNanos) {
+            this.applicants = applicants;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side limit on the rate and concurrency of lobby service requests
+ * <p>
+ * Every attempt at a request, retries included, must pass the limiter. The
+ * rate limit is a token bucket. The concurrency limit adapts to the lobby
+ * service using additive increase, multiplicative decrease: it grows slowly
+ * while requests complete fine, and is cut as soon as 5xx responses appear or
+ * recent latency rises well above the long-term average, so that a struggling
+ * lobby service gets relief instead of a growing queue. The requests already
+ * in flight when the limit is cut report the same overload, and only cut it
+ * once.
+ * </p>
+ * <p>
+ * Requests that would have to wait longer than the configured maximum wait
+ * are rejected with a {@link RequestRejectedException}, which is never retried.
+ * A limiter may be shared by several connectors talking to the same lobby service.
+ * </p>
+ * @see LimiterConfig
+ */
+public class RequestLimiter {
+    private static final double SHORT_TERM_WEIGHT = 0.1;
+    private static final double LONG_TERM_WEIGHT = 0.002;
+
+    private final long nanosPerRequest;
+    private final int burst;
+    private final boolean adaptiveConcurrency;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    // theoretical arrival time of the next request, see GCRA
+    private long nextRequestNanos = System.nanoTime();
+    private double concurrencyLimit;
+    private int inFlight;
+    // permits handed out so far, and how many had been when the limit was last cut
+    private long entered;
+    private long enteredAtBackoff;
+    private double shortTermLatencyNanos = -1;
+    private double longTermLatencyNanos = -1;
+
+    public RequestLimiter(LimiterConfig config) {
+        InvariantUtil.checkNotNullOrThrow(config, "config");
+        if (config.getRequestsPerSecond() < 0) {
+            throw new IllegalArgumentException("requestsPerSecond must not be negative");
+        }
+        if (config.getBurst() < 1) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        if (config.getMinConcurrency() < 1 || config.getMaxConcurrency() < config.getMinConcurrency()) {
+            throw new IllegalArgumentException("concurrency bounds must satisfy 0 < minConcurrency <= maxConcurrency");
+        }
+        if (config.getBackoffRatio() <= 0 || config.getBackoffRatio() >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in the range (0, 1)");
+        }
+        nanosPerRequest = config.getRequestsPerSecond() > 0
+                ? Math.round(TimeUnit.SECONDS.toNanos(1) / config.getRequestsPerSecond())
+                : 0;
+        burst = config.getBurst();
+        adaptiveConcurrency = config.isAdaptiveConcurrency();
+        minConcurrency = config.getMinConcurrency();
+        maxConcurrency = config.getMaxConcurrency();
+        backoffRatio = config.getBackoffRatio();
+        latencyTolerance = config.getLatencyTolerance();
+        maxWaitNanos = InvariantUtil.checkNotNullOrThrow(config.getMaxWait(), "maxWait").toNanos();
+        concurrencyLimit = Math.max(minConcurrency, Math.min(maxConcurrency, config.getInitialConcurrency()));
+    }
+
+    /**
+     * Waits until a request may be made
+     * @return permit which must be released when the request completes
+     * @throws RequestRejectedException if the request would have to wait too long,
+     * or the calling thread was interrupted while waiting
+     */
+    Permit acquire() {
+        final long startNanos = System.nanoTime();
+        final long deadline = startNanos + maxWaitNanos;
+        if (nanosPerRequest > 0) {
+            final long rateWaitNanos = reserve(startNanos);
+            if (rateWaitNanos > 0) {
+                sleep(rateWaitNanos);
+            }
+        }
+        if (adaptiveConcurrency) {
+            return enter(startNanos, deadline);
+        }
+        return new Permit(System.nanoTime() - startNanos, 0, 0);
+    }
+
+    /**
+     * @return current concurrency limit, or zero if concurrency is not limited
+     */
+    public int getConcurrencyLimit() {
+        if (!adaptiveConcurrency) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            return (int) concurrencyLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of requests currently holding a permit, if concurrency is limited
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long reserve(long nowNanos) {
+        lock.lock();
+        try {
+            final long next = Math.max(nextRequestNanos, nowNanos) + nanosPerRequest;
+            final long waitNanos = next - burst * nanosPerRequest - nowNanos;
+            if (waitNanos > maxWaitNanos) {
+                throw new RequestRejectedException("Lobby service request rate limit exceeded");
+            }
+            nextRequestNanos = next;
+            return waitNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit enter(long startNanos, long deadline) {
+        lock.lock();
+        try {
+            while (inFlight >= (int) concurrencyLimit) {
+                final long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    throw new RequestRejectedException("Lobby service request concurrency limit of "
+                            + (int) concurrencyLimit + " exceeded");
+                }
+                permitReleased.awaitNanos(remainingNanos);
+            }
+            return new Permit(System.nanoTime() - startNanos, ++inFlight, ++entered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestRejectedException("Interrupted while waiting for lobby service request limiter", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, long latencyNanos, boolean overloaded) {
+        if (!adaptiveConcurrency) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight--;
+            final int limitBefore = (int) concurrencyLimit;
+            final boolean sampled = latencyNanos >= 0;
+            if (sampled && longTermLatencyNanos < 0) {
+                shortTermLatencyNanos = latencyNanos;
+                longTermLatencyNanos = latencyNanos;
+            } else if (sampled) {
+                // Comparing averages rather than single requests keeps a mix of
+                // fast and slow operations from being taken for overload
+                shortTermLatencyNanos += (latencyNanos - shortTermLatencyNanos) * SHORT_TERM_WEIGHT;
+                longTermLatencyNanos += (latencyNanos - longTermLatencyNanos) * LONG_TERM_WEIGHT;
+            }
+            if (overloaded || sampled && shortTermLatencyNanos > latencyTolerance * longTermLatencyNanos) {
+                if (permit.sequence > enteredAtBackoff) {
+                    concurrencyLimit = Math.max(minConcurrency, concurrencyLimit * backoffRatio);
+                    enteredAtBackoff = entered;
+                }
+            } else if (2 * permit.inFlightAtAcquire >= concurrencyLimit) {
+                // only grow a limit which is actually being used
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1 / concurrencyLimit);
+            }
+            permitReleased.signal();
+            if ((int) concurrencyLimit > limitBefore) {
+                permitReleased.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestRejectedException("Interrupted while waiting for lobby service request limiter", e);
+        }
+    }
+
+    final class Permit {
+        private final long waitNanos;
+        private final int inFlightAtAcquire;
+        private final long sequence;
+
+        private Permit(long waitNanos, int inFlightAtAcquire, long sequence) {
+            this.waitNanos = waitNanos;
+            this.inFlightAtAcquire = inFlightAtAcquire;
+            this.sequence = sequence;
+        }
+
+        /**
+         * @return time spent waiting for this permit
+         */
+        long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * @param latencyNanos time until the lobby service responded
+         * @param overloaded   whether the response, or lack of one, signals an overloaded lobby service
+         */
+        void release(long latencyNanos, boolean overloaded) {
+            RequestLimiter.this.release(this, latencyNanos, overloaded);
+        }
+
+        /**
+         * Releases permit without a latency sample, for instance when the
+         * request was retried while holding it
+         * @param overloaded whether the response, or lack of one, signals an overloaded lobby service
+         */
+        void release(boolean overloaded) {
+            RequestLimiter.this.release(this, -1, overloaded);
+        }
+    }
+}
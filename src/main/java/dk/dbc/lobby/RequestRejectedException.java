@@ -0,0 +1,22 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import jakarta.ws.rs.ProcessingException;
+
+/**
+ * Thrown when a request is turned away by the {@link RequestLimiter}
+ * without having been sent to the lobby service
+ */
+public class RequestRejectedException extends ProcessingException {
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+
+    public RequestRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of the requests made
+ * <p>
+ * Every request deposits a fraction of a retry token and every retry
+ * withdraws a whole token. When the lobby service fails across the board,
+ * the budget runs dry and requests fail after their first attempt instead of
+ * multiplying load on the struggling service. Up to a reserve of tokens can
+ * be saved up, letting sporadic failures be retried even under low traffic.
+ * </p>
+ */
+public class RetryBudget {
+    private static final long SCALE = 1000;
+
+    private final long depositPerRequest;
+    private final long maxBalance;
+    private final AtomicLong balance;
+
+    /**
+     * @param retryRatio  retries allowed per request, e.g. 0.2 for one retry per five requests
+     * @param reserve     maximum number of retries saved up, also available initially
+     */
+    public RetryBudget(double retryRatio, int reserve) {
+        if (retryRatio < 0) {
+            throw new IllegalArgumentException("retryRatio must not be negative");
+        }
+        if (reserve < 1) {
+            throw new IllegalArgumentException("reserve must be positive");
+        }
+        this.depositPerRequest = Math.round(retryRatio * SCALE);
+        this.maxBalance = reserve * SCALE;
+        this.balance = new AtomicLong(maxBalance);
+    }
+
+    /**
+     * Registers a request, depositing into the budget
+     */
+    public void deposit() {
+        balance.accumulateAndGet(depositPerRequest, (current, deposit) -> Math.min(maxBalance, current + deposit));
+    }
+
+    /**
+     * Attempts to withdraw a retry from the budget
+     * @return true if the retry may be made, false if the budget is exhausted
+     */
+    public boolean tryWithdraw() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    /**
+     * @return number of retries currently available
+     */
+    public double getAvailable() {
+        return (double) balance.get() / SCALE;
+    }
+}
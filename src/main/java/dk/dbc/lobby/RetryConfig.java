@@ -0,0 +1,193 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.time.Duration;
+
+/**
+ * Retry and circuit breaker settings of a {@link LobbyConnector}
+ * <p>
+ * Failed requests are retried with exponential backoff and jitter, so that
+ * callers hit by the same blip do not retry in lockstep. Retries are drawn
+ * from a {@link RetryBudget} shared by all requests of the connector, and a
+ * circuit breaker fails requests fast while the lobby service is down.
+ * </p>
+ */
+public class RetryConfig {
+    private int maxRetries = 6;
+    private Duration initialDelay = Duration.ofMillis(500);
+    private Duration maxDelay = Duration.ofSeconds(30);
+    private double jitterFactor = 0.5;
+    private Duration maxDuration = Duration.ofMinutes(2);
+    private double retryBudgetRatio = 0.2;
+    private int retryBudgetReserve = 20;
+    private int circuitBreakerFailureThreshold = 5;
+    private Duration circuitBreakerDelay = Duration.ofSeconds(30);
+    private int circuitBreakerSuccessThreshold = 1;
+    private boolean circuitBreakerEnabled = true;
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * @param maxRetries maximum number of retries per request (default 6)
+     * @return this config
+     */
+    public RetryConfig withMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public Duration getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * @param initialDelay delay before the first retry, doubled for each subsequent retry (default 500 ms)
+     * @return this config
+     */
+    public RetryConfig withInitialDelay(Duration initialDelay) {
+        this.initialDelay = initialDelay;
+        return this;
+    }
+
+    public Duration getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * @param maxDelay upper bound on the delay between retries (default 30 seconds)
+     * @return this config
+     */
+    public RetryConfig withMaxDelay(Duration maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    public double getJitterFactor() {
+        return jitterFactor;
+    }
+
+    /**
+     * @param jitterFactor random variation of each delay as a fraction of it, in the range [0, 1] (default 0.5)
+     * @return this config
+     */
+    public RetryConfig withJitterFactor(double jitterFactor) {
+        this.jitterFactor = jitterFactor;
+        return this;
+    }
+
+    public Duration getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * @param maxDuration time after which a request is no longer retried (default 2 minutes)
+     * @return this config
+     */
+    public RetryConfig withMaxDuration(Duration maxDuration) {
+        this.maxDuration = maxDuration;
+        return this;
+    }
+
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    /**
+     * @param retryBudgetRatio retries allowed per request across the connector (default 0.2)
+     * @return this config
+     * @see RetryBudget
+     */
+    public RetryConfig withRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+        return this;
+    }
+
+    public int getRetryBudgetReserve() {
+        return retryBudgetReserve;
+    }
+
+    /**
+     * @param retryBudgetReserve maximum number of retries saved up by the retry budget (default 20)
+     * @return this config
+     * @see RetryBudget
+     */
+    public RetryConfig withRetryBudgetReserve(int retryBudgetReserve) {
+        this.retryBudgetReserve = retryBudgetReserve;
+        return this;
+    }
+
+    public boolean isCircuitBreakerEnabled() {
+        return circuitBreakerEnabled;
+    }
+
+    /**
+     * @param circuitBreakerEnabled whether to use a circuit breaker (default true)
+     * @return this config
+     */
+    public RetryConfig withCircuitBreakerEnabled(boolean circuitBreakerEnabled) {
+        this.circuitBreakerEnabled = circuitBreakerEnabled;
+        return this;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * @param circuitBreakerFailureThreshold number of consecutive failed attempts opening the circuit (default 5)
+     * @return this config
+     */
+    public RetryConfig withCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+        return this;
+    }
+
+    public Duration getCircuitBreakerDelay() {
+        return circuitBreakerDelay;
+    }
+
+    /**
+     * @param circuitBreakerDelay time the circuit stays open before trial requests are let through (default 30 seconds)
+     * @return this config
+     */
+    public RetryConfig withCircuitBreakerDelay(Duration circuitBreakerDelay) {
+        this.circuitBreakerDelay = circuitBreakerDelay;
+        return this;
+    }
+
+    public int getCircuitBreakerSuccessThreshold() {
+        return circuitBreakerSuccessThreshold;
+    }
+
+    /**
+     * @param circuitBreakerSuccessThreshold number of successful trial requests closing the circuit (default 1)
+     * @return this config
+     */
+    public RetryConfig withCircuitBreakerSuccessThreshold(int circuitBreakerSuccessThreshold) {
+        this.circuitBreakerSuccessThreshold = circuitBreakerSuccessThreshold;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryConfig{" +
+                "maxRetries=" + maxRetries +
+                ", initialDelay=" + initialDelay +
+                ", maxDelay=" + maxDelay +
+                ", jitterFactor=" + jitterFactor +
+                ", maxDuration=" + maxDuration +
+                ", retryBudgetRatio=" + retryBudgetRatio +
+                ", retryBudgetReserve=" + retryBudgetReserve +
+                ", circuitBreakerEnabled=" + circuitBreakerEnabled +
+                ", circuitBreakerFailureThreshold=" + circuitBreakerFailureThreshold +
+                ", circuitBreakerDelay=" + circuitBreakerDelay +
+                ", circuitBreakerSuccessThreshold=" + circuitBreakerSuccessThreshold +
+                '}';
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+/**
+ * Wraps a {@link LobbyConnectorException} where a checked exception can not be thrown,
+ * for instance from an {@link java.util.Iterator}
+ */
+public class UncheckedLobbyConnectorException extends RuntimeException {
+    public UncheckedLobbyConnectorException(LobbyConnectorException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized LobbyConnectorException getCause() {
+        return (LobbyConnectorException) super.getCause();
+    }
+}
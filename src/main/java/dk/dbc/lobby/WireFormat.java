@@ -0,0 +1,36 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * Format of applicants exchanged with the lobby service
+ * <p>
+ * {@link #SMILE} is the binary JSON format of Jackson, carrying applicant
+ * bodies as raw bytes instead of base64 text and being considerably cheaper
+ * to parse. It is only used when the lobby service advertises it, otherwise
+ * the connector falls back to {@link #JSON}.
+ * </p>
+ */
+public enum WireFormat {
+    JSON(MediaType.APPLICATION_JSON_TYPE),
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    private final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    boolean isCompatible(MediaType other) {
+        return other != null && mediaType.isCompatible(other);
+    }
+}
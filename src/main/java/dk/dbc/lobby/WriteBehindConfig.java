@@ -0,0 +1,129 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of a {@link WriteBehindSpool}
+ */
+public class WriteBehindConfig {
+    private Path spoolFile;
+    private long maxSpoolBytes = 256L * 1024 * 1024;
+    private Duration maxWait = Duration.ofSeconds(30);
+    private boolean syncOnWrite = true;
+    private int batchSize = 100;
+    private int concurrency = 4;
+    private Duration initialRetryDelay = Duration.ofSeconds(1);
+    private Duration maxRetryDelay = Duration.ofMinutes(1);
+
+    public Path getSpoolFile() {
+        return spoolFile;
+    }
+
+    /**
+     * @param spoolFile spool file, created if missing and replayed if not empty (required)
+     * @return this config
+     */
+    public WriteBehindConfig withSpoolFile(Path spoolFile) {
+        this.spoolFile = spoolFile;
+        return this;
+    }
+
+    public long getMaxSpoolBytes() {
+        return maxSpoolBytes;
+    }
+
+    /**
+     * @param maxSpoolBytes size of the spool file at which writers are held back (default 256 MiB)
+     * @return this config
+     */
+    public WriteBehindConfig withMaxSpoolBytes(long maxSpoolBytes) {
+        this.maxSpoolBytes = maxSpoolBytes;
+        return this;
+    }
+
+    public Duration getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @param maxWait longest time a writer is held back by a full spool before failing (default 30 seconds)
+     * @return this config
+     */
+    public WriteBehindConfig withMaxWait(Duration maxWait) {
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public boolean isSyncOnWrite() {
+        return syncOnWrite;
+    }
+
+    /**
+     * @param syncOnWrite whether each write is forced to disk before being acknowledged,
+     *                    without it writes may be lost if the machine crashes (default true)
+     * @return this config
+     */
+    public WriteBehindConfig withSyncOnWrite(boolean syncOnWrite) {
+        this.syncOnWrite = syncOnWrite;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize maximum number of spooled applicants sent at a time (default 100)
+     * @return this config
+     */
+    public WriteBehindConfig withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * @param concurrency maximum number of applicants of a batch sent concurrently (default 4)
+     * @return this config
+     */
+    public WriteBehindConfig withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public Duration getInitialRetryDelay() {
+        return initialRetryDelay;
+    }
+
+    /**
+     * @param initialRetryDelay delay before resending applicants which failed, doubled for
+     *                          each subsequent failure (default 1 second)
+     * @return this config
+     */
+    public WriteBehindConfig withInitialRetryDelay(Duration initialRetryDelay) {
+        this.initialRetryDelay = initialRetryDelay;
+        return this;
+    }
+
+    public Duration getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * @param maxRetryDelay upper bound on the delay before resending (default 1 minute)
+     * @return this config
+     */
+    public WriteBehindConfig withMaxRetryDelay(Duration maxRetryDelay) {
+        this.maxRetryDelay = maxRetryDelay;
+        return this;
+    }
+}
@@ -0,0 +1,563 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import dk.dbc.invariant.InvariantUtil;
+import jakarta.ws.rs.ProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-behind queue for {@link LobbyConnector#createOrReplaceApplicant(Applicant)}
+ * backed by a durable spool file
+ * <p>
+ * Applicants are appended to the spool and acknowledged as soon as they are
+ * on disk, so callers no longer wait for the lobby service. A background
+ * sender drains the spool in batches, resending applicants which failed
+ * with a transient error until they succeed. Applicants rejected by the
+ * lobby service, e.g. with 422 Unprocessable Entity, are logged and dropped.
+ * So are applicants failing with any other permanent error, that is any
+ * client error but 408 Request Timeout and 429 Too Many Requests, and any
+ * failure other than a {@link ProcessingException}, as
+ * resending these would only fail the same way forever.
+ * </p>
+ * <p>
+ * The spool records how far it has been drained. Applicants spooled but
+ * not yet confirmed sent when the process stops are sent again when the
+ * spool is reopened. As the lobby service creates or replaces applicants by
+ * id, sending an applicant twice is harmless. Within a batch only the last
+ * spooled version of each applicant is sent.
+ * </p>
+ * <p>
+ * When the spool file reaches its maximum size writers are held back until
+ * the sender catches up, failing with a {@link LobbyConnectorException}
+ * if that takes longer than the configured maximum wait.
+ * </p>
+ * <pre>
+ *    try (WriteBehindSpool spool = new WriteBehindSpool(lobbyConnector, new WriteBehindConfig()
+ *            .withSpoolFile(Paths.get("/data/lobby.spool")))) {
+ *        spool.createOrReplaceApplicant(applicant);
+ *    }
+ * </pre>
+ */
+public class WriteBehindSpool implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindSpool.class);
+    // the spool starts with the offset of the first record not yet sent
+    private static final int HEADER_BYTES = Long.BYTES;
+    // each record is its payload length and checksum followed by the applicant as JSON
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final LobbyConnector connector;
+    private final Path spoolFile;
+    private final long maxSpoolBytes;
+    private final long maxWaitNanos;
+    private final boolean syncOnWrite;
+    private final int batchSize;
+    private final int concurrency;
+    private final long initialRetryDelayMillis;
+    private final long maxRetryDelayMillis;
+    private final ObjectWriter applicantWriter;
+    private final ObjectReader applicantReader;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    // written under the lock, read without it by the sender
+    private volatile FileChannel channel;
+    private long readOffset;
+    private long writeOffset;
+    private boolean closed;
+    private final Thread sender;
+
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong resent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spoolFullWaits = new AtomicLong();
+
+    /**
+     * Opens the spool, replaying applicants left over from a previous run,
+     * and starts the background sender
+     * @param connector connector used for sending applicants
+     * @param config    spool settings
+     * @throws LobbyConnectorException on failure to open the spool file
+     */
+    public WriteBehindSpool(LobbyConnector connector, WriteBehindConfig config) throws LobbyConnectorException {
+        this.connector = InvariantUtil.checkNotNullOrThrow(connector, "connector");
+        InvariantUtil.checkNotNullOrThrow(config, "config");
+        this.spoolFile = InvariantUtil.checkNotNullOrThrow(config.getSpoolFile(), "spoolFile");
+        if (config.getMaxSpoolBytes() <= HEADER_BYTES) {
+            throw new IllegalArgumentException("maxSpoolBytes must exceed " + HEADER_BYTES);
+        }
+        if (config.getBatchSize() < 1 || config.getConcurrency() < 1) {
+            throw new IllegalArgumentException("batchSize and concurrency must be positive");
+        }
+        this.maxSpoolBytes = config.getMaxSpoolBytes();
+        this.maxWaitNanos = InvariantUtil.checkNotNullOrThrow(config.getMaxWait(), "maxWait").toNanos();
+        this.syncOnWrite = config.isSyncOnWrite();
+        this.batchSize = config.getBatchSize();
+        this.concurrency = config.getConcurrency();
+        this.initialRetryDelayMillis = config.getInitialRetryDelay().toMillis();
+        this.maxRetryDelayMillis = config.getMaxRetryDelay().toMillis();
+        this.applicantWriter = ObjectMapperProvider.getDefault().getApplicantWriter(WireFormat.JSON);
+        this.applicantReader = ObjectMapperProvider.getDefault().getApplicantReader(WireFormat.JSON);
+        try {
+            channel = FileChannel.open(spoolFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            recover();
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to open spool " + spoolFile, e);
+        }
+        sender = connector.getExecutionMode().newThreadFactory("lobby-connector-write-behind")
+                .newThread(this::send);
+        sender.start();
+    }
+
+    /**
+     * Spools an applicant for creation or replacement in the lobby
+     * <p>
+     * Returns when the applicant is in the spool, possibly after waiting
+     * for room in a full spool.
+     * </p>
+     * @param applicant applicant with id
+     * @throws LobbyConnectorException if the applicant could not be spooled
+     */
+    public void createOrReplaceApplicant(Applicant applicant) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(applicant, "applicant");
+        InvariantUtil.checkNotNullNotEmptyOrThrow(applicant.getId(), "applicant.id");
+        final ByteBuffer record = toRecord(applicant);
+        final int recordBytes = record.remaining();
+        if (HEADER_BYTES + recordBytes > maxSpoolBytes) {
+            throw new LobbyConnectorException("Applicant " + applicant.getId() + " of " + recordBytes
+                    + " bytes does not fit in spool " + spoolFile);
+        }
+        lock.lock();
+        try {
+            long remainingNanos = maxWaitNanos;
+            if (!closed && writeOffset + recordBytes > maxSpoolBytes) {
+                spoolFullWaits.incrementAndGet();
+                while (!closed && writeOffset + recordBytes > maxSpoolBytes) {
+                    if (remainingNanos <= 0) {
+                        throw new LobbyConnectorException("Spool " + spoolFile + " is full");
+                    }
+                    remainingNanos = spaceAvailable.awaitNanos(remainingNanos);
+                }
+            }
+            if (closed) {
+                throw new LobbyConnectorException("Spool " + spoolFile + " is closed");
+            }
+            writeFully(record, writeOffset);
+            if (syncOnWrite) {
+                channel.force(false);
+            }
+            writeOffset += recordBytes;
+            spooled.incrementAndGet();
+            appended.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LobbyConnectorException("Interrupted while waiting for room in spool " + spoolFile, e);
+        } catch (ClosedByInterruptException e) {
+            // an interrupt during I/O closes the channel for everyone
+            reopen();
+            throw new LobbyConnectorException("Interrupted while writing to spool " + spoolFile, e);
+        } catch (IOException e) {
+            throw new LobbyConnectorException("Unable to write to spool " + spoolFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all spooled applicants have been sent or dropped
+     * @param timeout maximum time to wait
+     * @return true if the spool was drained, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long remainingNanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (readOffset < writeOffset) {
+                if (remainingNanos <= 0 || closed) {
+                    return false;
+                }
+                remainingNanos = drained.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the sender, leaving applicants not yet sent in the spool
+     * for the next time it is opened
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            appended.signalAll();
+            spaceAvailable.signalAll();
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        sender.interrupt();
+        try {
+            sender.join(CLOSE_TIMEOUT.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close spool {}", spoolFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of applicants spooled since opening
+     */
+    public long getSpooled() {
+        return spooled.get();
+    }
+
+    /**
+     * @return number of applicants sent since opening, including those replayed
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return number of times applicants failing with a transient error were sent again
+     */
+    public long getResent() {
+        return resent.get();
+    }
+
+    /**
+     * @return number of applicants rejected by the lobby service and dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of writers held back by a full spool
+     */
+    public long getSpoolFullWaits() {
+        return spoolFullWaits.get();
+    }
+
+    /**
+     * @return size in bytes of the spooled applicants not yet sent
+     */
+    public long getPendingBytes() {
+        lock.lock();
+        try {
+            return writeOffset - readOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ByteBuffer toRecord(Applicant applicant) throws LobbyConnectorException {
+        final byte[] payload;
+        try {
+            payload = applicantWriter.writeValueAsBytes(applicant);
+        } catch (JsonProcessingException e) {
+            throw new LobbyConnectorException("Unable to spool applicant " + applicant.getId(), e);
+        }
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.length);
+        record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+        return record;
+    }
+
+    /* Finds the records left by a previous run, discarding a record torn by a crash */
+    private void recover() throws IOException {
+        final long size = channel.size();
+        if (size < HEADER_BYTES) {
+            channel.truncate(0);
+            writeHeader(HEADER_BYTES);
+            readOffset = writeOffset = HEADER_BYTES;
+            return;
+        }
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(header, 0);
+        // an offset beyond the end is left by a crash while emptying a drained spool
+        readOffset = Math.min(Math.max(HEADER_BYTES, header.flip().getLong()), size);
+        long position = readOffset;
+        final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (position + RECORD_HEADER_BYTES <= size) {
+            readFully(recordHeader.clear(), position);
+            final int length = recordHeader.flip().getInt();
+            final int checksum = recordHeader.getInt();
+            if (length <= 0 || position + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            final ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_BYTES);
+            if (checksum(payload.array()) != checksum) {
+                break;
+            }
+            position += RECORD_HEADER_BYTES + length;
+        }
+        if (position < size) {
+            LOGGER.warn("Discarding {} bytes of incomplete records at the end of spool {}",
+                    size - position, spoolFile);
+            channel.truncate(position);
+        }
+        writeOffset = position;
+        if (writeOffset > readOffset) {
+            LOGGER.info("Replaying {} bytes of spooled applicants from {}", writeOffset - readOffset, spoolFile);
+        }
+    }
+
+    private void send() {
+        long retryDelayMillis = initialRetryDelayMillis;
+        while (true) {
+            final Batch batch;
+            try {
+                batch = awaitBatch();
+            } catch (ClosedChannelException e) {
+                // closed by close() or by an interrupted writer, which reopens it
+                continue;
+            } catch (IOException e) {
+                LOGGER.error("Unable to read from spool {}, stopping sender", spoolFile, e);
+                return;
+            }
+            if (batch == null) {
+                return;
+            }
+            Collection<Applicant> pending = batch.applicants.values();
+            while (!pending.isEmpty()) {
+                final List<ApplicantResult> results;
+                try {
+                    results = connector.createOrReplaceApplicants(pending, concurrency);
+                } catch (LobbyConnectorException e) {
+                    // interrupted by close, unsent applicants remain in the spool
+                    return;
+                }
+                final List<Applicant> failed = new ArrayList<>();
+                final Iterator<Applicant> applicants = pending.iterator();
+                for (ApplicantResult result : results) {
+                    final Applicant applicant = applicants.next();
+                    if (result.isOk()) {
+                        sent.incrementAndGet();
+                    } else if (isRejection(result)) {
+                        dropped.incrementAndGet();
+                        LOGGER.error("Lobby service rejected spooled applicant {}, dropping it: {}",
+                                result.getId(), result.getException().getMessage());
+                    } else {
+                        failed.add(applicant);
+                    }
+                }
+                pending = failed;
+                if (!pending.isEmpty()) {
+                    resent.addAndGet(pending.size());
+                    LOGGER.warn("Sending {} spooled applicants failed, resending in {} ms",
+                            pending.size(), retryDelayMillis);
+                    if (!sleep(retryDelayMillis)) {
+                        return;
+                    }
+                    retryDelayMillis = Math.min(maxRetryDelayMillis, 2 * retryDelayMillis);
+                } else {
+                    retryDelayMillis = initialRetryDelayMillis;
+                }
+            }
+            commit(batch.endOffset);
+        }
+    }
+
+    /* Waits for spooled records and reads up to a batch of them, or returns null when closed */
+    private Batch awaitBatch() throws IOException {
+        final long end;
+        lock.lock();
+        try {
+            while (!closed && readOffset == writeOffset) {
+                appended.awaitUninterruptibly();
+            }
+            if (closed) {
+                return null;
+            }
+            end = writeOffset;
+        } finally {
+            lock.unlock();
+        }
+        // Records below the write offset never change, and only this thread
+        // moves the read offset or replaces the channel
+        final Batch batch = new Batch();
+        final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        long position = readOffset;
+        int records = 0;
+        while (records < batchSize && position < end) {
+            readFully(recordHeader.clear(), position);
+            final int length = recordHeader.flip().getInt();
+            final ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER_BYTES);
+            position += RECORD_HEADER_BYTES + length;
+            records++;
+            try {
+                final Applicant applicant = applicantReader.readValue(payload.array());
+                // the latest version replaces any earlier one in the batch
+                batch.applicants.remove(applicant.getId());
+                batch.applicants.put(applicant.getId(), applicant);
+            } catch (IOException e) {
+                dropped.incrementAndGet();
+                LOGGER.error("Unable to read spooled applicant from {}, dropping it", spoolFile, e);
+            }
+        }
+        batch.endOffset = position;
+        return batch;
+    }
+
+    private void commit(long endOffset) {
+        lock.lock();
+        try {
+            readOffset = endOffset;
+            writeHeader(readOffset);
+            if (readOffset == writeOffset) {
+                // Truncating before resetting the header, a crash in between
+                // leaves an offset beyond the end, which recover() handles
+                channel.truncate(HEADER_BYTES);
+                writeHeader(HEADER_BYTES);
+                readOffset = writeOffset = HEADER_BYTES;
+                drained.signalAll();
+            } else if (readOffset - HEADER_BYTES >= maxSpoolBytes / 2) {
+                compact();
+            }
+            spaceAvailable.signalAll();
+        } catch (IOException e) {
+            LOGGER.error("Unable to update spool {}, applicants may be sent again", spoolFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* Replaces the spool with a copy holding only records not yet sent */
+    private void compact() throws IOException {
+        final Path compacted = spoolFile.resolveSibling(spoolFile.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            out.write(ByteBuffer.allocate(HEADER_BYTES).putLong(0, HEADER_BYTES));
+            long position = readOffset;
+            while (position < writeOffset) {
+                position += channel.transferTo(position, writeOffset - position, out);
+            }
+            out.force(true);
+        }
+        Files.move(compacted, spoolFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeOffset -= readOffset - HEADER_BYTES;
+        readOffset = HEADER_BYTES;
+    }
+
+    private void reopen() {
+        try {
+            channel = FileChannel.open(spoolFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            LOGGER.error("Unable to reopen spool {}", spoolFile, e);
+        }
+    }
+
+    private void writeHeader(long offset) throws IOException {
+        writeFully(ByteBuffer.allocate(HEADER_BYTES).putLong(0, offset), 0);
+        if (syncOnWrite) {
+            channel.force(false);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of spool " + spoolFile);
+            }
+            position += read;
+        }
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /* Failures the lobby service will keep answering the same way. A 404
+       without a JSON entity has already been retried by the connector. */
+    private static boolean isRejection(ApplicantResult result) {
+        switch (result.getOutcome()) {
+            case GONE:
+            case UNPROCESSABLE_ENTITY:
+                return true;
+            case UNEXPECTED_STATUS:
+                final int statusCode = ((LobbyConnectorUnexpectedStatusCodeException) result.getException())
+                        .getStatusCode();
+                return statusCode >= 400 && statusCode < 500 && statusCode != 408 && statusCode != 429;
+            default:
+                // Connection failures, an open circuit breaker and the request limiter
+                // raise processing exceptions, anything else is not transient
+                return !(result.getException() instanceof ProcessingException);
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static class Batch {
+        private final Map<String, Applicant> applicants = new LinkedHashMap<>();
+        private long endOffset;
+    }
+}
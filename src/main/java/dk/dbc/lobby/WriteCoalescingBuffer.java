@@ -0,0 +1,258 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.invariant.InvariantUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Buffer collapsing repeated writes of the same applicant
+ * <p>
+ * Since {@link LobbyConnector#createOrReplaceApplicant(Applicant)} creates or
+ * replaces by id, only the latest version of an applicant counts. The buffer
+ * keeps just that version per id, and sends the buffered applicants when the
+ * window started by the first buffered write expires, when the buffer holds
+ * the maximum number of applicants, on {@link #flush()} and on {@link #close()}.
+ * </p>
+ * <p>
+ * A write filling up the buffer sends it in the calling thread, holding back
+ * writers while the lobby service is slow. Applicants failing in flushes not
+ * started by {@link #flush()} are logged and passed to the failure handler.
+ * Flushes are serialized, so an older version of an applicant is never sent
+ * after a newer one.
+ * </p>
+ * <pre>
+ *    try (WriteCoalescingBuffer buffer = lobbyConnector.newWriteCoalescingBuffer(Duration.ofSeconds(1), 500)) {
+ *        buffer.createOrReplaceApplicant(applicant);
+ *    }
+ * </pre>
+ */
+public class WriteCoalescingBuffer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteCoalescingBuffer.class);
+
+    private final LobbyConnector connector;
+    private final long windowNanos;
+    private final int maxApplicants;
+    // held while sending, so that flushes do not overtake each other
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<String, Applicant> buffer = new LinkedHashMap<>();
+    private Future<?> windowFlush;
+    private boolean closed;
+    private volatile Consumer<ApplicantResult> failureHandler = result -> {};
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param connector     connector used for sending applicants
+     * @param window        time from the first buffered write until the buffer is sent
+     * @param maxApplicants number of buffered applicants at which the buffer is sent
+     */
+    public WriteCoalescingBuffer(LobbyConnector connector, Duration window, int maxApplicants) {
+        this.connector = InvariantUtil.checkNotNullOrThrow(connector, "connector");
+        this.windowNanos = InvariantUtil.checkNotNullOrThrow(window, "window").toNanos();
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        if (maxApplicants < 1) {
+            throw new IllegalArgumentException("maxApplicants must be positive");
+        }
+        this.maxApplicants = maxApplicants;
+    }
+
+    /**
+     * @param failureHandler receives applicants failing in window expiry and
+     *                       full buffer flushes
+     * @return this buffer
+     */
+    public WriteCoalescingBuffer withFailureHandler(Consumer<ApplicantResult> failureHandler) {
+        this.failureHandler = InvariantUtil.checkNotNullOrThrow(failureHandler, "failureHandler");
+        return this;
+    }
+
+    /**
+     * Buffers an applicant, replacing any buffered applicant with the same id
+     * @param applicant applicant with id
+     * @throws LobbyConnectorException if the buffer is closed, or interrupted
+     * while sending a full buffer
+     */
+    public void createOrReplaceApplicant(Applicant applicant) throws LobbyConnectorException {
+        InvariantUtil.checkNotNullOrThrow(applicant, "applicant");
+        InvariantUtil.checkNotNullNotEmptyOrThrow(applicant.getId(), "applicant.id");
+        final boolean full;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new LobbyConnectorException("Write coalescing buffer is closed");
+            }
+            writes.incrementAndGet();
+            // removing first moves the applicant to the end of the send order
+            if (buffer.remove(applicant.getId()) != null) {
+                collapsed.incrementAndGet();
+                connector.getMetrics().applicantWritesCollapsed(1);
+            }
+            buffer.put(applicant.getId(), applicant);
+            if (windowFlush == null) {
+                // sent by a worker thread of the connector
+                windowFlush = CompletableFuture.runAsync(this::flushOnWindowExpiry, CompletableFuture.delayedExecutor(
+                        windowNanos, TimeUnit.NANOSECONDS, connector.executor()));
+            }
+            full = buffer.size() >= maxApplicants;
+        } finally {
+            lock.unlock();
+        }
+        if (full) {
+            handleFailures(send());
+        }
+    }
+
+    /**
+     * Sends all buffered applicants
+     * @return per-applicant results
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     */
+    public List<ApplicantResult> flush() throws LobbyConnectorException {
+        return send();
+    }
+
+    /**
+     * Sends all buffered applicants and stops the window timer
+     * @throws LobbyConnectorException if interrupted while waiting for results
+     */
+    @Override
+    public void close() throws LobbyConnectorException {
+        lock.lock();
+        try {
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        handleFailures(send());
+    }
+
+    /**
+     * @return number of applicants written to the buffer
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * @return number of writes replaced by a later write of the same applicant before being sent
+     */
+    public long getCollapsed() {
+        return collapsed.get();
+    }
+
+    /**
+     * @return number of times buffered applicants were sent
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * @return number of applicants sent successfully
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return number of applicants which failed to be sent
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of applicants currently buffered
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<ApplicantResult> send() throws LobbyConnectorException {
+        flushLock.lock();
+        try {
+            final Map<String, Applicant> applicants;
+            lock.lock();
+            try {
+                if (windowFlush != null) {
+                    windowFlush.cancel(false);
+                    windowFlush = null;
+                }
+                applicants = buffer;
+                buffer = new LinkedHashMap<>();
+            } finally {
+                lock.unlock();
+            }
+            if (applicants.isEmpty()) {
+                return Collections.emptyList();
+            }
+            flushes.incrementAndGet();
+            final List<ApplicantResult> results = connector.createOrReplaceApplicants(applicants.values());
+            for (ApplicantResult result : results) {
+                if (result.isOk()) {
+                    sent.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            }
+            return results;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushOnWindowExpiry() {
+        try {
+            handleFailures(send());
+        } catch (LobbyConnectorException e) {
+            LOGGER.warn("Interrupted while sending buffered applicants", e);
+        }
+    }
+
+    private void handleFailures(List<ApplicantResult> results) {
+        final List<ApplicantResult> failures = new ArrayList<>();
+        for (ApplicantResult result : results) {
+            if (!result.isOk()) {
+                failures.add(result);
+            }
+        }
+        if (!failures.isEmpty()) {
+            LOGGER.error("Sending {} of {} buffered applicants failed", failures.size(), results.size());
+            for (ApplicantResult failure : failures) {
+                LOGGER.error("Sending buffered applicant {} failed: {}", failure.getId(), failure.getOutcome(),
+                        failure.getException());
+                failureHandler.accept(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ApplicantFingerprintIndexTest {
+    @Test
+    void fingerprintCoversContent() {
+        final long fingerprint = ApplicantFingerprintIndex.fingerprint(ApplicantFixtures.newApplicant(1, 100));
+        assertThat("stable", ApplicantFingerprintIndex.fingerprint(ApplicantFixtures.newApplicant(1, 100)),
+                is(fingerprint));
+
+        final Applicant changedState = ApplicantFixtures.newApplicant(1, 100);
+        changedState.setState(ApplicantState.ACCEPTED);
+        assertThat("state", ApplicantFingerprintIndex.fingerprint(changedState), is(not(fingerprint)));
+
+        final Applicant changedBody = ApplicantFixtures.newApplicant(1, 100);
+        changedBody.getBody()[99] ^= 1;
+        assertThat("body", ApplicantFingerprintIndex.fingerprint(changedBody), is(not(fingerprint)));
+
+        final Applicant changedAdditionalInfo = ApplicantFixtures.newApplicant(1, 100);
+        ((ObjectNode) changedAdditionalInfo.getAdditionalInfo()).put("agencyId", 870971);
+        assertThat("additionalInfo", ApplicantFingerprintIndex.fingerprint(changedAdditionalInfo),
+                is(not(fingerprint)));
+
+        // moving characters between fields must change the fingerprint
+        final Applicant a = ApplicantFixtures.newApplicant(1, 0);
+        a.setCategory("dpfa");
+        a.setMimetype("b");
+        final Applicant b = ApplicantFixtures.newApplicant(1, 0);
+        b.setCategory("dpf");
+        b.setMimetype("ab");
+        assertThat("field boundaries", ApplicantFingerprintIndex.fingerprint(a),
+                is(not(ApplicantFingerprintIndex.fingerprint(b))));
+
+        final Applicant modified = ApplicantFixtures.newApplicant(1, 100);
+        modified.setTimeOfLastModification(null);
+        assertThat("timestamps ignored", ApplicantFingerprintIndex.fingerprint(modified), is(fingerprint));
+    }
+
+    @Test
+    void putGrowAndRemove() {
+        final ApplicantFingerprintIndex index = new ApplicantFingerprintIndex();
+        for (int i = 0; i < 10_000; i++) {
+            index.put("applicant-" + i, i);
+        }
+        assertThat("size", index.size(), is(10_000));
+        assertThat("footprint", index.getMemoryFootprint(), is(16L * 16384));
+
+        for (int i = 0; i < 10_000; i += 2) {
+            index.remove("applicant-" + i);
+        }
+        assertThat("size after remove", index.size(), is(5_000));
+        for (int i = 0; i < 10_000; i++) {
+            assertThat("applicant-" + i, index.isUnchanged("applicant-" + i, i), is(i % 2 == 1));
+        }
+
+        index.put("applicant-1", 42);
+        assertThat("replaced", index.isUnchanged("applicant-1", 1), is(false));
+        assertThat("replaced", index.isUnchanged("applicant-1", 42), is(true));
+        assertThat("size after replace", index.size(), is(5_000));
+    }
+
+    @Test
+    void snapshot(@TempDir Path dir) throws LobbyConnectorException, IOException {
+        final Path snapshot = dir.resolve("fingerprints");
+        assertThat("missing snapshot", ApplicantFingerprintIndex.readSnapshot(snapshot).size(), is(0));
+
+        final ApplicantFingerprintIndex index = new ApplicantFingerprintIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put("applicant-" + i, i * 31L);
+        }
+        index.writeSnapshot(snapshot);
+
+        final ApplicantFingerprintIndex read = ApplicantFingerprintIndex.readSnapshot(snapshot);
+        assertThat("size", read.size(), is(1000));
+        for (int i = 0; i < 1000; i++) {
+            assertThat("applicant-" + i, read.isUnchanged("applicant-" + i, i * 31L), is(true));
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(snapshot) - 1);
+        }
+        assertThrows(LobbyConnectorException.class, () -> ApplicantFingerprintIndex.readSnapshot(snapshot));
+    }
+
+    @Test
+    void unchangedWritesAreSkipped() throws LobbyConnectorException, IOException {
+        try (LobbyServiceSimulator simulator = new LobbyServiceSimulator()) {
+            final DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+            final ApplicantFingerprintIndex index = new ApplicantFingerprintIndex();
+            final LobbyConnector connector = new LobbyConnector(
+                    HttpClient.newClient(new ClientConfig().register(new JacksonFeature())),
+                    simulator.getBaseUrl(), LobbyConnector.TimingLogLevel.TRACE, metrics)
+                    .withFingerprintIndex(index);
+            try {
+                connector.createOrReplaceApplicants(Arrays.asList(ApplicantFixtures.newApplicants(10, 64)));
+                connector.createOrReplaceApplicants(Arrays.asList(ApplicantFixtures.newApplicants(10, 64)));
+                assertThat("requests after unchanged re-harvest", simulator.getRequests(), is(10L));
+
+                final Applicant changed = ApplicantFixtures.newApplicant(3, 64);
+                changed.getBody()[0] ^= 1;
+                connector.createOrReplaceApplicant(changed);
+                connector.changeApplicantState("applicant-4", ApplicantState.ACCEPTED);
+                connector.createOrReplaceApplicant(ApplicantFixtures.newApplicant(4, 64));
+                assertThat("requests after changes", simulator.getRequests(), is(13L));
+
+                assertThat("skipped", index.getSkipped(), is(10L));
+                assertThat("sent", index.getSent(), is(12L));
+                assertThat("metrics", metrics.getSkippedWrites(), is(10L));
+                assertThat("footprint", metrics.getFingerprintIndexMemoryFootprint().isPresent(), is(true));
+            } finally {
+                connector.close();
+            }
+        }
+    }
+}
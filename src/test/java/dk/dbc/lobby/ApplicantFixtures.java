@@ -0,0 +1,60 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Generates applicants resembling those found in a real lobby, for use in
+ * benchmarks and load tests
+ */
+final class ApplicantFixtures {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ApplicantFixtures() {}
+
+    static Applicant newApplicant(int index, int bodySize) {
+        final Random random = new Random(index);
+        final Applicant applicant = new Applicant();
+        applicant.setId("applicant-" + index);
+        applicant.setCategory("dpf");
+        applicant.setMimetype("text/marcxchange");
+        applicant.setState(ApplicantState.PENDING);
+        applicant.setTimeOfCreation(new Date(1571212956165L + index));
+        applicant.setTimeOfLastModification(new Date(1571212956165L + index));
+        if (bodySize > 0) {
+            final byte[] body = new byte[bodySize];
+            random.nextBytes(body);
+            applicant.setBody(body);
+        }
+        applicant.setAdditionalInfo(newAdditionalInfo(index));
+        return applicant;
+    }
+
+    static Applicant[] newApplicants(int count, int bodySize) {
+        final Applicant[] applicants = new Applicant[count];
+        for (int i = 0; i < count; i++) {
+            applicants[i] = newApplicant(i, bodySize);
+        }
+        return applicants;
+    }
+
+    static byte[] toJson(Object value) {
+        try {
+            return MAPPER.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JsonNode newAdditionalInfo(int index) {
+        final ObjectNode additionalInfo = MAPPER.createObjectNode();
+        additionalInfo.put("localId", "bibID-" + index);
+        additionalInfo.put("agencyId", 870970);
+        additionalInfo.putArray("errors").add("err1").add("err2");
+        return additionalInfo;
+    }
+}
@@ -0,0 +1,86 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap retained by a deserialized listing held as
+ * {@link Applicant} versus {@link ApplicantView}
+ * <p>
+ * Retained heap is estimated as the difference in used heap, after forced
+ * garbage collections, before and after deserializing the listing, and is
+ * reported per applicant in the {@code retainedBytesPerApplicant} counter.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class ApplicantRetainedHeapBenchmark {
+    @Param({"100000"})
+    public int applicants;
+
+    @Param({"0", "1024"})
+    public int bodySize;
+
+    private ObjectReader applicantsReader;
+    private ObjectReader applicantViewsReader;
+    private byte[] listing;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        public long retainedBytesPerApplicant;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final ObjectMapperProvider objectMapperProvider = ObjectMapperProvider.getDefault();
+        applicantsReader = objectMapperProvider.getApplicantsReader(WireFormat.JSON);
+        applicantViewsReader = objectMapperProvider.getApplicantViewsReader(WireFormat.JSON);
+        listing = ApplicantFixtures.toJson(ApplicantFixtures.newApplicants(applicants, bodySize));
+    }
+
+    @Benchmark
+    public Object applicant(RetainedHeap retainedHeap) throws IOException {
+        return measure(applicantsReader, retainedHeap);
+    }
+
+    @Benchmark
+    public Object applicantView(RetainedHeap retainedHeap) throws IOException {
+        return measure(applicantViewsReader, retainedHeap);
+    }
+
+    private Object measure(ObjectReader reader, RetainedHeap retainedHeap) throws IOException {
+        final long before = usedHeap();
+        final Object[] result = reader.readValue(listing);
+        final long after = usedHeap();
+        retainedHeap.retainedBytesPerApplicant = (after - before) / result.length;
+        return result;
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,73 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures (de)serialization of applicants as done on the listing and PUT paths
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplicantSerializationBenchmark {
+    @Param({"100", "10000"})
+    public int applicants;
+
+    @Param({"0", "4096"})
+    public int bodySize;
+
+    @Param({"false", "true"})
+    public boolean bytecodeAcceleration;
+
+    private ObjectReader listingReader;
+    private ObjectWriter applicantWriter;
+    private byte[] listing;
+    private Applicant applicant;
+
+    private Map<String, Object> additionalInfo;
+
+    @Setup
+    public void setup() {
+        final ObjectMapperProvider objectMapperProvider = new ObjectMapperProvider(bytecodeAcceleration);
+        listingReader = objectMapperProvider.getApplicantsReader(WireFormat.JSON);
+        applicantWriter = objectMapperProvider.getApplicantWriter(WireFormat.JSON);
+        listing = ApplicantFixtures.toJson(ApplicantFixtures.newApplicants(applicants, bodySize));
+        applicant = ApplicantFixtures.newApplicant(0, bodySize);
+        additionalInfo = Map.of("localId", "bibID-0", "agencyId", 870970, "errors", List.of("err1", "err2"));
+    }
+
+    @Benchmark
+    public Applicant[] deserializeListing() throws IOException {
+        return listingReader.readValue(listing);
+    }
+
+    @Benchmark
+    public byte[] serializeApplicant() throws IOException {
+        return applicantWriter.writeValueAsBytes(applicant);
+    }
+
+    @Benchmark
+    public Applicant setAdditionalInfo() throws IOException {
+        applicant.setAdditionalInfo((Object) additionalInfo);
+        return applicant;
+    }
+}
@@ -0,0 +1,211 @@
+package dk.dbc.lobby;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import jakarta.ws.rs.ProcessingException;
+import net.jodah.failsafe.CircuitBreakerOpenException;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AsyncLobbyConnectorTest {
+
+    private static WireMockServer wireMockServer;
+    private static String wireMockHost;
+    private static AsyncLobbyConnector connector;
+
+    @BeforeAll
+    static void startWireMockServer() {
+        wireMockServer = new WireMockServer(options().dynamicPort()
+                .dynamicHttpsPort());
+        wireMockServer.start();
+        wireMockHost = "http://localhost:" + wireMockServer.port();
+        connector = new AsyncLobbyConnector(HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature())), wireMockHost);
+    }
+
+    @AfterAll
+    static void stopWireMockServer() {
+        connector.close();
+        wireMockServer.stop();
+    }
+
+    @Test
+    void testGetApplicantsAsync() throws InterruptedException, ExecutionException {
+        LobbyConnector.Params params = new LobbyConnector.Params();
+        params.withCategory("dpf");
+        params.withState(LobbyConnector.Params.State.PENDING);
+
+        Applicant[] actual = connector.getApplicantsAsync(params).get();
+
+        assertThat(actual.length, is(1));
+        assertThat(actual[0].getId(), is("1"));
+        assertThat(actual[0].getBodyLink(), is(wireMockHost + "/v1/api/applicants/1/body"));
+    }
+
+    @Test
+    void testGetApplicantsAsyncWithSeveralCategories() throws InterruptedException, ExecutionException {
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("fan-out-a"))
+                .willReturn(okJson("[{\"id\":\"fan-out-1\"},{\"id\":\"fan-out-2\"}]")));
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("fan-out-b"))
+                .willReturn(okJson("[{\"id\":\"fan-out-2\"},{\"id\":\"fan-out-3\"}]")));
+        LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategories(Arrays.asList("fan-out-a", "fan-out-b"));
+
+        Applicant[] actual = connector.getApplicantsAsync(params).get();
+
+        assertThat(Arrays.stream(actual).map(Applicant::getId).collect(Collectors.toList()),
+                is(Arrays.asList("fan-out-1", "fan-out-2", "fan-out-3")));
+    }
+
+    @Test
+    void testCreateOrReplaceApplicantAsync() throws InterruptedException, ExecutionException {
+        wireMockServer.stubFor(put(urlEqualTo("/v1/api/applicants/async-1"))
+                .willReturn(aResponse().withStatus(201)));
+        Applicant applicant = new Applicant();
+        applicant.setId("async-1");
+        applicant.setState(ApplicantState.PENDING);
+
+        connector.createOrReplaceApplicantAsync(applicant).get();
+    }
+
+    @Test
+    void testCreateOrReplaceApplicantAsyncGone() {
+        wireMockServer.stubFor(put(urlEqualTo("/v1/api/applicants/async-gone"))
+                .willReturn(aResponse().withStatus(410)));
+        Applicant applicant = new Applicant();
+        applicant.setId("async-gone");
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> connector.createOrReplaceApplicantAsync(applicant).get());
+        assertThat(e.getCause(), instanceOf(LobbyConnectorGoneException.class));
+    }
+
+    @Test
+    void testRetryConfigWithCircuitBreaker() {
+        wireMockServer.stubFor(put(urlEqualTo("/v1/api/applicants/async-unavailable"))
+                .willReturn(aResponse().withStatus(503)));
+        final AsyncLobbyConnector breakingConnector = new AsyncLobbyConnector(
+                HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, new RetryConfig()
+                        .withMaxRetries(4)
+                        .withInitialDelay(Duration.ofMillis(1))
+                        .withMaxDelay(Duration.ofMillis(5))
+                        .withCircuitBreakerFailureThreshold(3)
+                        .withCircuitBreakerDelay(Duration.ofMinutes(1)));
+        final Applicant applicant = new Applicant();
+        applicant.setId("async-unavailable");
+        try {
+            ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> breakingConnector.createOrReplaceApplicantAsync(applicant).get());
+            assertThat(e.getCause(), instanceOf(LobbyConnectorUnexpectedStatusCodeException.class));
+
+            ExecutionException failFast = assertThrows(ExecutionException.class,
+                    () -> breakingConnector.createOrReplaceApplicantAsync(applicant).get());
+            assertThat(failFast.getCause(), instanceOf(ProcessingException.class));
+            assertThat(failFast.getCause().getCause(), instanceOf(CircuitBreakerOpenException.class));
+            wireMockServer.verify(exactly(3), putRequestedFor(urlEqualTo("/v1/api/applicants/async-unavailable")));
+        } finally {
+            breakingConnector.close();
+        }
+    }
+
+    @Test
+    void testMetrics() throws InterruptedException, ExecutionException {
+        wireMockServer.stubFor(put(urlEqualTo("/v1/api/applicants/async-metrics"))
+                .willReturn(aResponse().withStatus(201)));
+        wireMockServer.stubFor(put(urlEqualTo("/v1/api/applicants/async-metrics-gone"))
+                .willReturn(aResponse().withStatus(410)));
+        final DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        final AsyncLobbyConnector metricsConnector = new AsyncLobbyConnector(
+                HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), wireMockHost,
+                LobbyConnector.TimingLogLevel.TRACE, metrics);
+        final Applicant applicant = new Applicant();
+        applicant.setId("async-metrics");
+        final Applicant gone = new Applicant();
+        gone.setId("async-metrics-gone");
+        try {
+            metricsConnector.getApplicantsAsync(new LobbyConnector.Params()
+                    .withCategory("dpf")
+                    .withState(LobbyConnector.Params.State.PENDING)).get();
+            metricsConnector.createOrReplaceApplicantAsync(applicant).get();
+            assertThrows(ExecutionException.class, () -> metricsConnector.createOrReplaceApplicantAsync(gone).get());
+
+            assertThat("listing", metrics.getLatency(LobbyConnectorMetrics.Operation.GET_APPLICANTS,
+                    LobbyConnectorMetrics.Outcome.OK).getCount(), is(1L));
+            assertThat("applicant count", metrics.getApplicantCounts(
+                    LobbyConnectorMetrics.Operation.GET_APPLICANTS).getMax(), is(1L));
+            assertThat("created", metrics.getLatency(LobbyConnectorMetrics.Operation.CREATE_OR_REPLACE_APPLICANT,
+                    LobbyConnectorMetrics.Outcome.OK).getCount(), is(1L));
+            assertThat("gone", metrics.getLatency(LobbyConnectorMetrics.Operation.CREATE_OR_REPLACE_APPLICANT,
+                    LobbyConnectorMetrics.Outcome.GONE).getCount(), is(1L));
+            assertThat("in flight", metrics.getInFlight(), is(0L));
+        } finally {
+            metricsConnector.close();
+        }
+    }
+
+    @Test
+    void testGetApplicantsAsyncFanOutIsBounded() throws InterruptedException, ExecutionException {
+        for (String category : Arrays.asList("bounded-a", "bounded-b", "bounded-c")) {
+            wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                    .withQueryParam("category", equalTo(category))
+                    .willReturn(okJson("[{\"id\":\"" + category + "\"}]").withFixedDelay(200)));
+        }
+        LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategories(Arrays.asList("bounded-a", "bounded-b", "bounded-c"));
+        connector.withFanOutConcurrency(1);
+        try {
+            final long startNanos = System.nanoTime();
+            Applicant[] actual = connector.getApplicantsAsync(params).get();
+            final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+            assertThat(Arrays.stream(actual).map(Applicant::getId).collect(Collectors.toList()),
+                    is(Arrays.asList("bounded-a", "bounded-b", "bounded-c")));
+            assertThat("one listing at a time", elapsed.compareTo(Duration.ofMillis(600)) >= 0, is(true));
+        } finally {
+            connector.withFanOutConcurrency(LobbyConnector.DEFAULT_BULK_CONCURRENCY);
+        }
+    }
+
+    @Test
+    void testGetApplicantsAsyncWithMultiValuedQueries() throws InterruptedException, ExecutionException {
+        wireMockServer.stubFor(get(urlEqualTo("/v1/api/applicants?category=multi-a&category=multi-b"))
+                .willReturn(okJson("[{\"id\":\"multi-1\"},{\"id\":\"multi-2\"}]")));
+        LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategories(Arrays.asList("multi-a", "multi-b"));
+        connector.withMultiValuedQueries(true);
+        try {
+            Applicant[] actual = connector.getApplicantsAsync(params).get();
+
+            assertThat(Arrays.stream(actual).map(Applicant::getId).collect(Collectors.toList()),
+                    is(Arrays.asList("multi-1", "multi-2")));
+        } finally {
+            connector.withMultiValuedQueries(false);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package dk.dbc.lobby;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+class HistogramTest {
+
+    @Test
+    void bucketsCoverValues() {
+        for (long value : new long[] {0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE}) {
+            final long upperBound = Histogram.upperBoundOf(Histogram.indexOf(value));
+            assertThat("upper bound of " + value, upperBound, greaterThanOrEqualTo(value));
+            assertThat("relative error of " + value, upperBound - value, lessThanOrEqualTo(value / 8));
+        }
+    }
+
+    @Test
+    void percentiles() {
+        final Histogram histogram = new Histogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMax(), is(1000L));
+        assertThat(histogram.getValueAtPercentile(50), greaterThanOrEqualTo(500L));
+        assertThat(histogram.getValueAtPercentile(50), lessThanOrEqualTo(500L + 500L / 8));
+        assertThat(histogram.getValueAtPercentile(99), greaterThanOrEqualTo(990L));
+        assertThat(histogram.getValueAtPercentile(100), is(1000L));
+    }
+
+    @Test
+    void empty() {
+        assertThat(new Histogram().getValueAtPercentile(99), is(0L));
+    }
+}
@@ -0,0 +1,97 @@
+package dk.dbc.lobby;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class LobbyChangeFeedTest {
+
+    private static WireMockServer wireMockServer;
+    private static LobbyConnector connector;
+
+    @BeforeAll
+    static void startWireMockServer() {
+        wireMockServer = new WireMockServer(options().dynamicPort()
+                .dynamicHttpsPort());
+        wireMockServer.start();
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature())), "http://localhost:" + wireMockServer.port());
+    }
+
+    @AfterAll
+    static void stopWireMockServer() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    void pollDeliversOnlyChanges(@TempDir Path tempDir) throws LobbyConnectorException {
+        stubListing("[" +
+                "{\"id\":\"feed-3\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":2000}," +
+                "{\"id\":\"feed-1\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":1000}," +
+                "{\"id\":\"feed-2\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":2000}]");
+        final Path watermarkFile = tempDir.resolve("feed.watermark");
+        final LobbyChangeFeed feed = new LobbyChangeFeed(connector,
+                new LobbyConnector.Params().withCategory("feed"), watermarkFile);
+
+        final List<String> delivered = new ArrayList<>();
+        assertThat("first poll", feed.poll(applicant -> delivered.add(applicant.getId())), is(3));
+        assertThat("delivered in modification order", delivered.get(0), is("feed-1"));
+        assertThat("watermark", feed.getWatermark().getTime(), is(2000L));
+
+        assertThat("ids at watermark are deduplicated",
+                feed.poll(applicant -> delivered.add(applicant.getId())), is(0));
+
+        stubListing("[" +
+                "{\"id\":\"feed-3\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":2000}," +
+                "{\"id\":\"feed-2\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":2000}," +
+                "{\"id\":\"feed-4\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":2000}]");
+        final LobbyChangeFeed restarted = new LobbyChangeFeed(connector,
+                new LobbyConnector.Params().withCategory("feed"), watermarkFile);
+        final List<String> deliveredAfterRestart = new ArrayList<>();
+        assertThat("poll after restart", restarted.poll(applicant -> deliveredAfterRestart.add(applicant.getId())),
+                is(1));
+        assertThat(deliveredAfterRestart.get(0), is("feed-4"));
+    }
+
+    @Test
+    void applicantsWithoutModificationAreDeliveredOnce() throws LobbyConnectorException {
+        stubListing("[" +
+                "{\"id\":\"feed-1\",\"category\":\"feed\",\"state\":\"PENDING\",\"timeOfLastModification\":1000}," +
+                "{\"id\":\"unmodified-1\",\"category\":\"feed\",\"state\":\"PENDING\"}]");
+        final LobbyChangeFeed feed = new LobbyChangeFeed(connector,
+                new LobbyConnector.Params().withCategory("feed"));
+
+        final List<String> delivered = new ArrayList<>();
+        assertThat("first poll", feed.poll(applicant -> delivered.add(applicant.getId())), is(2));
+        assertThat("second poll", feed.poll(applicant -> delivered.add(applicant.getId())), is(0));
+        assertThat(delivered, is(List.of("unmodified-1", "feed-1")));
+
+        feed.reset();
+        assertThat("poll after reset", feed.poll(applicant -> delivered.add(applicant.getId())), is(2));
+    }
+
+    private static void stubListing(String body) {
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("feed"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(body)));
+    }
+}
@@ -0,0 +1,82 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the request paths of {@link LobbyConnector}, both in isolation
+ * and end-to-end against an in-process {@link LobbyStubServer}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LobbyConnectorBenchmark {
+    @Param({"100", "10000"})
+    public int applicants;
+
+    private LobbyStubServer server;
+    private LobbyConnector connector;
+    private LobbyConnector.Params params;
+    private Applicant applicant;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new LobbyStubServer();
+        server.setListing(ApplicantFixtures.newApplicants(applicants, 0));
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature())), server.getBaseUrl(), LobbyConnector.TimingLogLevel.TRACE);
+        params = new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING);
+        applicant = ApplicantFixtures.newApplicant(0, 4096);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connector.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Applicant constructBodyLink() {
+        connector.constructBodyLink(applicant);
+        return applicant;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public LobbyRequest buildListingRequest() {
+        return connector.newListingRequest(params);
+    }
+
+    @Benchmark
+    public Applicant[] getApplicants() throws LobbyConnectorException {
+        return connector.getApplicants(params);
+    }
+
+    @Benchmark
+    public void createOrReplaceApplicant() throws LobbyConnectorException {
+        connector.createOrReplaceApplicant(applicant);
+    }
+}
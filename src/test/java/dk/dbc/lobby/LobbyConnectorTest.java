@@ -1,22 +1,53 @@
 package dk.dbc.lobby;
 
 import com.github.tomakehurst.wiremock.WireMockServer;
+import dk.dbc.httpclient.FailSafeHttpClient;
 import dk.dbc.httpclient.HttpClient;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
+import net.jodah.failsafe.CircuitBreakerOpenException;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.configureFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.put;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class LobbyConnectorTest {
 
@@ -66,6 +97,418 @@ public class LobbyConnectorTest {
         assertThat(actual[0].getBodyLink(), is(wireMockHost + "/v1/api/applicants/1/body"));
     }
 
+    @Test
+    void testGetApplicantsThroughFailSafeHttpClient() throws LobbyConnectorException {
+        LobbyConnector failSafeConnector = new LobbyConnector(
+                FailSafeHttpClient.create(CLIENT, LobbyConnector.RETRY_POLICY), wireMockHost);
+
+        Applicant[] actual = failSafeConnector.getApplicants(new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING));
+
+        assertThat(actual.length, is(1));
+        assertThat(actual[0].getId(), is("1"));
+        assertThat(actual[0].getBodyLink(), is(wireMockHost + "/v1/api/applicants/1/body"));
+    }
+
+    @Test
+    void testGetApplicantViews() throws LobbyConnectorException {
+        stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("views"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[{\"id\":\"view-1\",\"category\":\"views\",\"state\":\"ACCEPTED\"," +
+                                "\"body\":\"aGVsbG8=\",\"timeOfCreation\":1571212956165," +
+                                "\"additionalInfo\":{\"localId\":\"bibID-1\",\"errors\":[\"err1\"]}," +
+                                "\"somethingNew\":{\"a\":1}}]")));
+
+        ApplicantView[] views = connector.getApplicantViews(new LobbyConnector.Params().withCategory("views"));
+
+        assertThat(views.length, is(1));
+        ApplicantView view = views[0];
+        assertThat(view.getId(), is("view-1"));
+        assertThat(view.getState(), is(ApplicantState.ACCEPTED));
+        assertThat(view.getTimeOfCreationMillis(), is(1571212956165L));
+        assertThat(view.getTimeOfLastModification(), nullValue());
+        assertThat(view.getAdditionalInfo().get("errors").get(0).asText(), is("err1"));
+        assertThat(view.getBodyLink(), is(wireMockHost + "/v1/api/applicants/view-1/body"));
+        assertThat(view.toString().contains("bodySize=5"), is(true));
+
+        Applicant applicant = view.toApplicant();
+        assertThat(new String(applicant.getBody(), StandardCharsets.UTF_8), is("hello"));
+        assertThat(applicant.getAdditionalInfo().get("localId").asText(), is("bibID-1"));
+    }
+
+    @Test
+    void testStreamApplicants() throws LobbyConnectorException {
+        LobbyConnector.Params params = new LobbyConnector.Params();
+        params.withCategory("dpf");
+        params.withState(LobbyConnector.Params.State.PENDING);
+
+        final List<Applicant> actual;
+        try (Stream<Applicant> applicants = connector.streamApplicants(params)) {
+            actual = applicants.collect(Collectors.toList());
+        }
+
+        assertThat(actual.size(), is(1));
+        assertThat(actual.get(0).getId(), is("1"));
+        assertThat(actual.get(0).getState(), is(ApplicantState.PENDING));
+        assertThat(actual.get(0).getTimeOfLastModification(), is(Date.from(Instant.ofEpochMilli(1571212956165L))));
+        assertThat(actual.get(0).getBodyLink(), is(wireMockHost + "/v1/api/applicants/1/body"));
+    }
+
+    @Test
+    void testCreateOrReplaceApplicants() throws LobbyConnectorException {
+        stubFor(put(urlEqualTo("/v1/api/applicants/bulk-ok"))
+                .willReturn(aResponse().withStatus(201)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/bulk-gone"))
+                .willReturn(aResponse().withStatus(410)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/bulk-unprocessable"))
+                .willReturn(aResponse().withStatus(422)));
+
+        List<ApplicantResult> results = connector.createOrReplaceApplicants(Arrays.asList(
+                newApplicant("bulk-ok"), newApplicant("bulk-gone"), newApplicant("bulk-unprocessable")), 2);
+
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).getId(), is("bulk-ok"));
+        assertThat(results.get(0).getOutcome(), is(ApplicantResult.Outcome.OK));
+        assertThat(results.get(1).getId(), is("bulk-gone"));
+        assertThat(results.get(1).getOutcome(), is(ApplicantResult.Outcome.GONE));
+        assertThat(results.get(2).getId(), is("bulk-unprocessable"));
+        assertThat(results.get(2).getOutcome(), is(ApplicantResult.Outcome.UNPROCESSABLE_ENTITY));
+    }
+
+    @Test
+    void testParamsWithSeveralCategoriesAndStates() {
+        final LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategories(Arrays.asList("a", "b", "a"))
+                .withStates(Collections.singleton(LobbyConnector.Params.State.PENDING))
+                .withLimit(10);
+
+        assertThat(params.getCategory().isPresent(), is(false));
+        assertThat(params.getCategories(), is(new LinkedHashSet<>(Arrays.asList("a", "b"))));
+        assertThat(params.getState(), is(Optional.of(LobbyConnector.Params.State.PENDING)));
+        assertThat(params.isMultiValued(), is(true));
+
+        final List<LobbyConnector.Params> combinations = params.combinations();
+        assertThat(combinations.size(), is(2));
+        assertThat(combinations.get(0).getCategory(), is(Optional.of("a")));
+        assertThat(combinations.get(1).getCategory(), is(Optional.of("b")));
+        assertThat(combinations.get(1).getLimit(), is(Optional.of(10)));
+        assertThat(combinations.get(1).isMultiValued(), is(false));
+
+        assertThrows(IllegalArgumentException.class, () -> connector.getApplicantsPage(params));
+    }
+
+    @Test
+    void testChangeApplicantState() throws LobbyConnectorException {
+        stubFor(put(urlEqualTo("/v1/api/applicants/state-1/state"))
+                .willReturn(aResponse().withStatus(200)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/state-gone/state"))
+                .willReturn(aResponse().withStatus(410)));
+
+        connector.changeApplicantState("state-1", ApplicantState.ACCEPTED);
+
+        verify(putRequestedFor(urlEqualTo("/v1/api/applicants/state-1/state"))
+                .withHeader("Content-Type", equalTo("application/json"))
+                .withRequestBody(equalToJson("\"ACCEPTED\"")));
+        assertThrows(LobbyConnectorGoneException.class,
+                () -> connector.changeApplicantState("state-gone", ApplicantState.ACCEPTED));
+    }
+
+    @Test
+    void testChangeApplicantStates() throws LobbyConnectorException {
+        stubFor(put(urlEqualTo("/v1/api/applicants/states-ok/state"))
+                .willReturn(aResponse().withStatus(204)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/states-gone/state"))
+                .willReturn(aResponse().withStatus(410)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/states-unprocessable/state"))
+                .willReturn(aResponse().withStatus(422)));
+
+        List<ApplicantResult> results = connector.changeApplicantStates(
+                Arrays.asList("states-ok", "states-gone", "states-unprocessable"), ApplicantState.ACCEPTED);
+
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).getId(), is("states-ok"));
+        assertThat(results.get(0).getOutcome(), is(ApplicantResult.Outcome.OK));
+        assertThat(results.get(1).getId(), is("states-gone"));
+        assertThat(results.get(1).getException() instanceof LobbyConnectorGoneException, is(true));
+        assertThat(results.get(2).getId(), is("states-unprocessable"));
+        assertThat(results.get(2).getException() instanceof LobbyConnectorUnprocessableEntityException,
+                is(true));
+    }
+
+    @Test
+    void testFetchBodies() throws LobbyConnectorException {
+        stubFor(get(urlEqualTo("/v1/api/applicants/body-1/body"))
+                .willReturn(aResponse().withStatus(200).withBody("hello body")));
+        stubFor(get(urlEqualTo("/v1/api/applicants/body-gone/body"))
+                .willReturn(aResponse().withStatus(410)));
+        LobbyConnector cachingConnector = new LobbyConnector(CLIENT, wireMockHost)
+                .withBodyCache(new ApplicantBodyCache(1024));
+        Applicant applicant = newApplicant("body-1");
+        applicant.setTimeOfLastModification(Date.from(Instant.ofEpochMilli(1571212956165L)));
+
+        List<ApplicantResult> results = cachingConnector.fetchBodies(
+                new Applicant[] {applicant, newApplicant("body-gone")});
+
+        assertThat(results.get(0).getOutcome(), is(ApplicantResult.Outcome.OK));
+        assertThat(new String(applicant.getBody(), StandardCharsets.UTF_8), is("hello body"));
+        assertThat(results.get(1).getOutcome(), is(ApplicantResult.Outcome.GONE));
+
+        assertThat("cached", new String(cachingConnector.fetchBody(applicant), StandardCharsets.UTF_8),
+                is("hello body"));
+        verify(1, getRequestedFor(urlEqualTo("/v1/api/applicants/body-1/body")));
+    }
+
+    @Test
+    void testGetApplicantsConditional() throws LobbyConnectorException {
+        stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("etag"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody("[{\"id\":\"etag-1\",\"category\":\"etag\",\"state\":\"PENDING\"}]")));
+        stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("etag"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(304)));
+        ConditionalRequestCache cache = new ConditionalRequestCache();
+        LobbyConnector conditionalConnector = new LobbyConnector(CLIENT, wireMockHost)
+                .withConditionalRequestCache(cache);
+        LobbyConnector.Params params = new LobbyConnector.Params().withCategory("etag");
+
+        Applicant[] first = conditionalConnector.getApplicants(params);
+        Applicant[] second = conditionalConnector.getApplicants(params);
+
+        assertThat(first.length, is(1));
+        assertThat(second.length, is(1));
+        assertThat(second[0].getId(), is("etag-1"));
+        assertThat(second[0].getBodyLink(), is(wireMockHost + "/v1/api/applicants/etag-1/body"));
+        assertThat("misses", cache.getMisses(), is(1L));
+        assertThat("hits", cache.getHits(), is(1L));
+    }
+
+    @Test
+    void testMetrics() throws LobbyConnectorException {
+        stubFor(put(urlEqualTo("/v1/api/applicants/metrics-gone"))
+                .willReturn(aResponse().withStatus(410)));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector metricsConnector = new LobbyConnector(CLIENT, wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics);
+
+        metricsConnector.getApplicants(new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING));
+        assertThrows(LobbyConnectorGoneException.class,
+                () -> metricsConnector.createOrReplaceApplicant(newApplicant("metrics-gone")));
+
+        assertThat(metrics.getLatency(LobbyConnectorMetrics.Operation.GET_APPLICANTS,
+                LobbyConnectorMetrics.Outcome.OK).getCount(), is(1L));
+        assertThat(metrics.getApplicantCounts(LobbyConnectorMetrics.Operation.GET_APPLICANTS).getMax(), is(1L));
+        assertThat(metrics.getLatency(LobbyConnectorMetrics.Operation.CREATE_OR_REPLACE_APPLICANT,
+                LobbyConnectorMetrics.Outcome.GONE).getCount(), is(1L));
+        assertThat(metrics.getInFlight(), is(0L));
+    }
+
+    @Test
+    void testPooledConnector() throws LobbyConnectorException {
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector pooledConnector = LobbyConnectorFactory.create(wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, new ConnectionPoolConfig()
+                        .withMaxConnections(4)
+                        .withMaxConnectionsPerRoute(2)
+                        .withLeaseTimeout(Duration.ofSeconds(5)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-ok"))
+                .willReturn(aResponse().withStatus(201)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"id\":\"pooled-ok\"}")));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-bad-request"))
+                .willReturn(aResponse().withStatus(400).withBody("bad request")));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-gone"))
+                .willReturn(aResponse().withStatus(410).withBody("gone")));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-unprocessable"))
+                .willReturn(aResponse().withStatus(422).withBody("unprocessable")));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-ok/state"))
+                .willReturn(aResponse().withStatus(204)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-gone/state"))
+                .willReturn(aResponse().withStatus(410).withBody("gone")));
+        try {
+            for (int i = 0; i < 3; i++) {
+                pooledConnector.getApplicants(new LobbyConnector.Params()
+                        .withCategory("dpf")
+                        .withState(LobbyConnector.Params.State.PENDING));
+            }
+            // more writes than pooled connections per route, every response must give its connection back
+            for (int i = 0; i < 3; i++) {
+                pooledConnector.createOrReplaceApplicant(newApplicant("pooled-ok"));
+                pooledConnector.changeApplicantState("pooled-ok", ApplicantState.ACCEPTED);
+                assertThrows(LobbyConnectorGoneException.class,
+                        () -> pooledConnector.createOrReplaceApplicant(newApplicant("pooled-gone")));
+                assertThrows(LobbyConnectorUnprocessableEntityException.class,
+                        () -> pooledConnector.createOrReplaceApplicant(newApplicant("pooled-unprocessable")));
+                assertThrows(LobbyConnectorGoneException.class,
+                        () -> pooledConnector.changeApplicantState("pooled-gone", ApplicantState.ACCEPTED));
+                assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                        () -> pooledConnector.createOrReplaceApplicant(newApplicant("pooled-bad-request")));
+            }
+            ConnectionPoolStats stats = metrics.getConnectionPoolStats().orElseThrow();
+            assertThat("max", stats.getMax(), is(4));
+            assertThat("leased", stats.getLeased(), is(0));
+            assertThat("kept alive", stats.getAvailable(), is(1));
+        } finally {
+            pooledConnector.close();
+        }
+    }
+
+    @Test
+    void testRetriedResponsesAreClosed() throws LobbyConnectorException {
+        stubFor(put(urlEqualTo("/v1/api/applicants/pooled-unavailable"))
+                .willReturn(aResponse().withStatus(503).withBody("unavailable")));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector pooledConnector = LobbyConnectorFactory.create(wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, new ConnectionPoolConfig()
+                        .withMaxConnectionsPerRoute(1)
+                        .withLeaseTimeout(Duration.ofSeconds(2)),
+                newFastRetryConfig().withCircuitBreakerEnabled(false));
+        try {
+            for (int i = 0; i < 2; i++) {
+                assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                        () -> pooledConnector.createOrReplaceApplicant(newApplicant("pooled-unavailable")));
+            }
+            assertThat("retries", metrics.getRetries(), is(8L));
+            pooledConnector.getApplicants(new LobbyConnector.Params()
+                    .withCategory("dpf")
+                    .withState(LobbyConnector.Params.State.PENDING));
+            assertThat("leased", metrics.getConnectionPoolStats().orElseThrow().getLeased(), is(0));
+        } finally {
+            pooledConnector.close();
+        }
+    }
+
+    @Test
+    void testNotFoundFromLobbyServiceIsNotRetried() {
+        stubFor(put(urlEqualTo("/v1/api/applicants/not-found"))
+                .willReturn(aResponse().withStatus(404)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"message\":\"no such category\"}")));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector retryingConnector = new LobbyConnector(CLIENT, wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, newFastRetryConfig());
+
+        assertThrows(LobbyConnectorNotFoundException.class,
+                () -> retryingConnector.createOrReplaceApplicant(newApplicant("not-found")));
+        verify(1, putRequestedFor(urlEqualTo("/v1/api/applicants/not-found")));
+        assertThat(metrics.getRetries(), is(0L));
+    }
+
+    @Test
+    void testCircuitBreakerOpens() {
+        stubFor(put(urlEqualTo("/v1/api/applicants/unavailable"))
+                .willReturn(aResponse().withStatus(503)));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector retryingConnector = new LobbyConnector(CLIENT, wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, newFastRetryConfig()
+                        .withCircuitBreakerFailureThreshold(3));
+
+        assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                () -> retryingConnector.createOrReplaceApplicant(newApplicant("unavailable")));
+        assertThat("circuit breaker state", metrics.getCircuitBreakerState(),
+                is(LobbyConnectorMetrics.CircuitBreakerState.OPEN));
+
+        ProcessingException failFast = assertThrows(ProcessingException.class,
+                () -> retryingConnector.createOrReplaceApplicant(newApplicant("unavailable")));
+        assertThat(failFast.getCause() instanceof CircuitBreakerOpenException, is(true));
+        verify(3, putRequestedFor(urlEqualTo("/v1/api/applicants/unavailable")));
+        assertThat("retries", metrics.getRetries(), is(2L));
+        assertThat("openings", metrics.getCircuitBreakerOpenings(), is(1L));
+    }
+
+    @Test
+    void testRetryBudgetExhausted() {
+        stubFor(put(urlEqualTo("/v1/api/applicants/budget"))
+                .willReturn(aResponse().withStatus(502)));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector retryingConnector = new LobbyConnector(CLIENT, wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, newFastRetryConfig()
+                        .withCircuitBreakerEnabled(false)
+                        .withRetryBudgetRatio(0)
+                        .withRetryBudgetReserve(2));
+
+        assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                () -> retryingConnector.createOrReplaceApplicant(newApplicant("budget")));
+
+        verify(3, putRequestedFor(urlEqualTo("/v1/api/applicants/budget")));
+        assertThat("retries", metrics.getRetries(), is(2L));
+        assertThat("exhaustions", metrics.getRetryBudgetExhaustions(), is(1L));
+    }
+
+    @Test
+    void testRetryBudgetNotTakenWhenRetriesRunOut() {
+        stubFor(put(urlEqualTo("/v1/api/applicants/retries-run-out"))
+                .willReturn(aResponse().withStatus(502)));
+        DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+        LobbyConnector retryingConnector = new LobbyConnector(CLIENT, wireMockHost,
+                LobbyConnector.TimingLogLevel.INFO, metrics, newFastRetryConfig()
+                        .withMaxRetries(2)
+                        .withCircuitBreakerEnabled(false)
+                        .withRetryBudgetRatio(0)
+                        .withRetryBudgetReserve(10));
+
+        assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                () -> retryingConnector.createOrReplaceApplicant(newApplicant("retries-run-out")));
+
+        verify(3, putRequestedFor(urlEqualTo("/v1/api/applicants/retries-run-out")));
+        assertThat("retries", metrics.getRetries(), is(2L));
+        assertThat("exhaustions", metrics.getRetryBudgetExhaustions(), is(0L));
+        assertThat("budget left", metrics.getRetryBudgetAvailable().orElseThrow(), is(8.0));
+    }
+
+    private static RetryConfig newFastRetryConfig() {
+        return new RetryConfig()
+                .withMaxRetries(4)
+                .withInitialDelay(Duration.ofMillis(1))
+                .withMaxDelay(Duration.ofMillis(5))
+                .withCircuitBreakerDelay(Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testCreateOrReplaceApplicantStreamingBody(@TempDir Path tempDir) throws LobbyConnectorException, IOException {
+        byte[] body = "streamed body".getBytes(StandardCharsets.UTF_8);
+        String expectedJson = "{\"id\":\"upload\",\"category\":\"dpf\"," +
+                "\"state\":\"PENDING\",\"body\":\"" + Base64.getEncoder().encodeToString(body) + "\"}";
+        stubFor(put(urlEqualTo("/v1/api/applicants/upload"))
+                .willReturn(aResponse().withStatus(400)));
+        stubFor(put(urlEqualTo("/v1/api/applicants/upload"))
+                .withRequestBody(equalToJson(expectedJson))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(201)));
+        Path bodyFile = Files.write(tempDir.resolve("body"), body);
+        Applicant applicant = newApplicant("upload");
+        applicant.setBody(new byte[] {'x'});
+
+        connector.createOrReplaceApplicant(applicant, bodyFile);
+        connector.createOrReplaceApplicant(applicant, ByteBuffer.wrap(body));
+        connector.createOrReplaceApplicant(applicant, new ByteArrayInputStream(body));
+
+        verify(3, putRequestedFor(urlEqualTo("/v1/api/applicants/upload")));
+    }
+
+    @Test
+    void testStreamingBodyIsNotRetriedByFailSafeHttpClient() {
+        stubFor(put(urlEqualTo("/v1/api/applicants/upload-unavailable"))
+                .willReturn(aResponse().withStatus(503)));
+        LobbyConnector failSafeConnector = new LobbyConnector(
+                FailSafeHttpClient.create(CLIENT, LobbyConnector.RETRY_POLICY), wireMockHost);
+
+        assertThrows(LobbyConnectorUnexpectedStatusCodeException.class,
+                () -> failSafeConnector.createOrReplaceApplicant(newApplicant("upload-unavailable"),
+                        new ByteArrayInputStream("streamed body".getBytes(StandardCharsets.UTF_8))));
+
+        verify(1, putRequestedFor(urlEqualTo("/v1/api/applicants/upload-unavailable")));
+    }
+
     @Test
     void testConstructBodyLink() {
         Applicant applicant = new Applicant();
@@ -76,4 +519,11 @@ public class LobbyConnectorTest {
         assertThat(applicant.getBodyLink(), is(wireMockHost + "/v1/api/applicants/test-1/body"));
     }
 
+    private static Applicant newApplicant(String id) {
+        Applicant applicant = new Applicant();
+        applicant.setId(id);
+        applicant.setCategory("dpf");
+        applicant.setState(ApplicantState.PENDING);
+        return applicant;
+    }
 }
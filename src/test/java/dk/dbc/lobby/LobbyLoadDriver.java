@@ -0,0 +1,122 @@
+package dk.dbc.lobby;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls a lobby operation from a number of threads for a given duration,
+ * reporting throughput and latency percentiles
+ * <pre>
+ *    LobbyLoadDriver.Report report = new LobbyLoadDriver(32, Duration.ofMinutes(1))
+ *            .run(call -&gt; connector.getApplicants(params));
+ * </pre>
+ */
+final class LobbyLoadDriver {
+    /**
+     * Lobby operation under load
+     */
+    @FunctionalInterface
+    interface Call {
+        /**
+         * @param index sequence number of the call on its thread
+         * @throws Exception on failure, counted as a failed call
+         */
+        void run(long index) throws Exception;
+    }
+
+    private final int threads;
+    private final Duration duration;
+
+    /**
+     * @param threads  number of threads calling the operation back to back
+     * @param duration time to keep calling the operation
+     */
+    LobbyLoadDriver(int threads, Duration duration) {
+        this.threads = threads;
+        this.duration = duration;
+    }
+
+    Report run(Call call) throws InterruptedException {
+        final Histogram latencies = new Histogram();
+        final LongAdder failures = new LongAdder();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                ExecutionMode.PLATFORM_THREADS.newThreadFactory("lobby-load-driver"));
+        final long startNanos = System.nanoTime();
+        final long deadlineNanos = startNanos + duration.toNanos();
+        try {
+            final List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> {
+                    for (long index = 0; System.nanoTime() - deadlineNanos < 0; index++) {
+                        final long callStartNanos = System.nanoTime();
+                        try {
+                            call.run(index);
+                        } catch (Exception e) {
+                            failures.increment();
+                        }
+                        latencies.record(System.nanoTime() - callStartNanos);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load driver thread failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report(latencies, failures.sum(), System.nanoTime() - startNanos);
+    }
+
+    static final class Report {
+        private final Histogram latencies;
+        private final long failures;
+        private final long elapsedNanos;
+
+        private Report(Histogram latencies, long failures, long elapsedNanos) {
+            this.latencies = latencies;
+            this.failures = failures;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return number of completed calls, failed calls included
+         */
+        long getCalls() {
+            return latencies.getCount();
+        }
+
+        long getFailures() {
+            return failures;
+        }
+
+        double getCallsPerSecond() {
+            return getCalls() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+
+        /**
+         * @param percentile percentile in the range [0, 100]
+         * @return call latency at the given percentile
+         */
+        Duration getLatency(double percentile) {
+            return Duration.ofNanos(latencies.getValueAtPercentile(percentile));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d, failures=%d, calls/s=%.1f, p50=%.2f ms, p99=%.2f ms, max=%.2f ms",
+                    getCalls(), failures, getCallsPerSecond(),
+                    latencies.getValueAtPercentile(50) / 1e6,
+                    latencies.getValueAtPercentile(99) / 1e6,
+                    latencies.getMax() / 1e6);
+        }
+    }
+}
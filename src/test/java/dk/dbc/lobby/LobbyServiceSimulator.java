@@ -0,0 +1,430 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Embeddable lobby service keeping applicants in memory, used for load and
+ * soak testing the connectors
+ * <p>
+ * Implements listing with the category, state, modifiedSince and paging
+ * params, creating or replacing applicants in JSON or Smile, changing the
+ * state of applicants and fetching applicant bodies. Each request is delayed by a value drawn from a
+ * configurable {@link LatencyDistribution}, and may be answered by an
+ * injected {@link Fault} instead.
+ * </p>
+ * <pre>
+ *    try (LobbyServiceSimulator simulator = new LobbyServiceSimulator()
+ *            .withLatency(LatencyDistribution.logNormal(Duration.ofMillis(5), 0.5))
+ *            .withFault(Fault.BAD_GATEWAY, 0.01)) {
+ *        simulator.populate(10000, 1024);
+ *        ...
+ *    }
+ * </pre>
+ */
+final class LobbyServiceSimulator implements AutoCloseable {
+    private static final String APPLICANTS_PATH = "/v1/api/applicants";
+    private static final String BODY_SUFFIX = "/body";
+    private static final String STATE_SUFFIX = "/state";
+    private static final String SMILE = WireFormat.SMILE.getMediaType().toString();
+
+    /**
+     * Failure answering a request in place of the lobby service
+     */
+    enum Fault {
+        NOT_FOUND(404),
+        GONE(410),
+        UNPROCESSABLE_ENTITY(422),
+        INTERNAL_SERVER_ERROR(500),
+        BAD_GATEWAY(502),
+        /** Connection closed without a response */
+        CONNECTION_RESET(0);
+
+        private final int statusCode;
+
+        Fault(int statusCode) {
+            this.statusCode = statusCode;
+        }
+    }
+
+    /**
+     * Distribution of the time taken to answer a request
+     */
+    @FunctionalInterface
+    interface LatencyDistribution {
+        long nextNanos(Random random);
+
+        static LatencyDistribution none() {
+            return random -> 0;
+        }
+
+        static LatencyDistribution fixed(Duration latency) {
+            final long nanos = latency.toNanos();
+            return random -> nanos;
+        }
+
+        static LatencyDistribution uniform(Duration min, Duration max) {
+            final long minNanos = min.toNanos();
+            final long rangeNanos = max.toNanos() - minNanos;
+            return random -> minNanos + (long) (random.nextDouble() * rangeNanos);
+        }
+
+        static LatencyDistribution exponential(Duration mean) {
+            final double meanNanos = mean.toNanos();
+            return random -> (long) (-meanNanos * Math.log(1 - random.nextDouble()));
+        }
+
+        /**
+         * @param median median latency
+         * @param sigma  standard deviation of the log of the latency, 0.5 puts the
+         *               99th percentile at about three times the median
+         * @return heavy-tailed distribution typical of service latencies
+         */
+        static LatencyDistribution logNormal(Duration median, double sigma) {
+            final double mu = Math.log(median.toNanos());
+            return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+        }
+    }
+
+    static {
+        // without it small responses wait for delayed acknowledgements, adding
+        // tens of milliseconds to each request; only read by the first server made
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapperProvider objectMapperProvider = ObjectMapperProvider.getDefault();
+    private final NavigableMap<String, Applicant> applicants = new ConcurrentSkipListMap<>();
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+    private volatile LatencyDistribution latency = LatencyDistribution.none();
+    private volatile Map<Fault, Double> faults = Collections.emptyMap();
+    private final LongAdder requests = new LongAdder();
+    private final Map<Fault, LongAdder> injectedFaults = new EnumMap<>(Fault.class);
+
+    LobbyServiceSimulator() throws IOException {
+        for (Fault fault : Fault.values()) {
+            injectedFaults.put(fault, new LongAdder());
+        }
+        executor = Executors.newCachedThreadPool(
+                ExecutionMode.PLATFORM_THREADS.newThreadFactory("lobby-service-simulator"));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        server.setExecutor(executor);
+        server.createContext(APPLICANTS_PATH, this::handle);
+        server.start();
+    }
+
+    String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    LobbyServiceSimulator withLatency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * @param fault       failure to inject
+     * @param probability probability of answering any request with this failure,
+     *                    0 to stop injecting it
+     * @return this simulator
+     */
+    LobbyServiceSimulator withFault(Fault fault, double probability) {
+        final Map<Fault, Double> updated = new EnumMap<>(Fault.class);
+        updated.putAll(faults);
+        if (probability > 0) {
+            updated.put(fault, probability);
+        } else {
+            updated.remove(fault);
+        }
+        faults = updated;
+        return this;
+    }
+
+    /**
+     * Stores the given number of pending applicants, with ids applicant-0 and upwards
+     * @param count    number of applicants
+     * @param bodySize size of each applicant body in bytes
+     */
+    void populate(int count, int bodySize) {
+        for (int i = 0; i < count; i++) {
+            store(ApplicantFixtures.newApplicant(i, bodySize), false);
+        }
+    }
+
+    int size() {
+        return applicants.size();
+    }
+
+    /**
+     * @param id applicant id
+     * @return stored applicant without body, or null if unknown
+     */
+    Applicant getApplicant(String id) {
+        return applicants.get(id);
+    }
+
+    byte[] getBody(String id) {
+        return bodies.get(id);
+    }
+
+    long getRequests() {
+        return requests.sum();
+    }
+
+    long getInjectedFaults(Fault fault) {
+        return injectedFaults.get(fault).sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /* Returns true if the applicant was created rather than replaced */
+    private boolean store(Applicant applicant, boolean modified) {
+        final byte[] body = applicant.getBody();
+        applicant.setBody(null);
+        applicant.setBodyLink(null);
+        final Applicant existing = applicants.get(applicant.getId());
+        if (existing != null && existing.getTimeOfCreation() != null) {
+            applicant.setTimeOfCreation(existing.getTimeOfCreation());
+        } else if (applicant.getTimeOfCreation() == null) {
+            applicant.setTimeOfCreation(new Date());
+        }
+        if (modified || applicant.getTimeOfLastModification() == null) {
+            applicant.setTimeOfLastModification(new Date());
+        }
+        if (body != null) {
+            bodies.put(applicant.getId(), body);
+        } else {
+            bodies.remove(applicant.getId());
+        }
+        return applicants.put(applicant.getId(), applicant) == null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try {
+            final long delayNanos = latency.nextNanos(ThreadLocalRandom.current());
+            if (delayNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(delayNanos);
+            }
+            final Fault fault = drawFault();
+            if (fault != null) {
+                injectedFaults.get(fault).increment();
+                if (fault == Fault.CONNECTION_RESET) {
+                    exchange.close();
+                } else {
+                    respond(exchange, fault.statusCode, "text/plain",
+                            ("Injected " + fault).getBytes(StandardCharsets.UTF_8));
+                }
+                return;
+            }
+            route(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "text/plain", String.valueOf(e).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private Fault drawFault() {
+        final Map<Fault, Double> current = faults;
+        if (current.isEmpty()) {
+            return null;
+        }
+        double draw = ThreadLocalRandom.current().nextDouble();
+        for (Map.Entry<Fault, Double> fault : current.entrySet()) {
+            draw -= fault.getValue();
+            if (draw < 0) {
+                return fault.getKey();
+            }
+        }
+        return null;
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final String method = exchange.getRequestMethod();
+        if (path.equals(APPLICANTS_PATH) || path.equals(APPLICANTS_PATH + "/")) {
+            if ("GET".equals(method)) {
+                list(exchange);
+            } else {
+                respond(exchange, 405, null, null);
+            }
+            return;
+        }
+        final String id = path.substring(APPLICANTS_PATH.length() + 1);
+        if (id.endsWith(BODY_SUFFIX) && "GET".equals(method)) {
+            getBody(exchange, id.substring(0, id.length() - BODY_SUFFIX.length()));
+        } else if (id.endsWith(STATE_SUFFIX) && "PUT".equals(method)) {
+            changeState(exchange, id.substring(0, id.length() - STATE_SUFFIX.length()));
+        } else if (!id.contains("/") && "PUT".equals(method)) {
+            put(exchange, id);
+        } else {
+            respond(exchange, 404, null, null);
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        final Map<String, List<String>> params = queryParams(exchange.getRequestURI());
+        // repeated category and state params select any of their values
+        final List<String> categories = params.get("category");
+        final List<String> states = params.get("state");
+        final long modifiedSince = params.containsKey("modifiedSince")
+                ? Long.parseLong(first(params, "modifiedSince")) : Long.MIN_VALUE;
+        final int limit = params.containsKey("limit") ? Integer.parseInt(first(params, "limit")) : Integer.MAX_VALUE;
+        int skip = params.containsKey("offset") ? Integer.parseInt(first(params, "offset")) : 0;
+        final String cursor = first(params, "cursor");
+
+        final List<Applicant> page = new ArrayList<>();
+        String nextCursor = null;
+        for (Applicant applicant : cursor == null ? applicants.values() : applicants.tailMap(cursor, false).values()) {
+            if (categories != null && !categories.contains(applicant.getCategory())
+                    || states != null && (applicant.getState() == null
+                        || !states.contains(applicant.getState().name()))
+                    || applicant.getTimeOfLastModification() != null
+                        && applicant.getTimeOfLastModification().getTime() < modifiedSince) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            if (page.size() == limit) {
+                nextCursor = page.get(page.size() - 1).getId();
+                break;
+            }
+            page.add(applicant);
+        }
+        if (nextCursor != null) {
+            exchange.getResponseHeaders().set(LobbyConnector.HEADER_NEXT_CURSOR, nextCursor);
+        }
+        final String accept = exchange.getRequestHeaders().getFirst("Accept");
+        final WireFormat format = accept != null && accept.contains(SMILE) ? WireFormat.SMILE : WireFormat.JSON;
+        final ObjectMapper mapper = objectMapperProvider.getObjectMapper(format);
+        respond(exchange, 200, format.getMediaType().toString(), mapper.writeValueAsBytes(page));
+    }
+
+    private void put(HttpExchange exchange, String id) throws IOException {
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        final WireFormat format = contentType != null && contentType.startsWith(SMILE)
+                ? WireFormat.SMILE : WireFormat.JSON;
+        final Applicant applicant;
+        try (InputStream requestBody = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))
+                ? new GZIPInputStream(exchange.getRequestBody())
+                : exchange.getRequestBody()) {
+            applicant = objectMapperProvider.getApplicantReader(format).readValue(requestBody);
+        } catch (IOException e) {
+            respond(exchange, 400, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        applicant.setId(id);
+        respond(exchange, store(applicant, true) ? 201 : 200, null, null);
+    }
+
+    /* Unknown applicants are gone, unknown states unprocessable */
+    private void changeState(HttpExchange exchange, String id) throws IOException {
+        final ApplicantState state;
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            state = objectMapperProvider.getObjectMapper().readValue(requestBody, ApplicantState.class);
+        } catch (IOException e) {
+            respond(exchange, 422, "text/plain", String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        final Applicant existing = applicants.get(id);
+        if (existing == null) {
+            respond(exchange, 410, "text/plain", ("No applicant " + id).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        final Applicant changed = new Applicant();
+        changed.setId(id);
+        changed.setCategory(existing.getCategory());
+        changed.setMimetype(existing.getMimetype());
+        changed.setState(state);
+        changed.setTimeOfCreation(existing.getTimeOfCreation());
+        changed.setTimeOfLastModification(new Date());
+        changed.setAdditionalInfo(existing.getAdditionalInfo());
+        applicants.put(id, changed);
+        respond(exchange, 200, null, null);
+    }
+
+    private void getBody(HttpExchange exchange, String id) throws IOException {
+        final Applicant applicant = applicants.get(id);
+        if (applicant == null) {
+            respond(exchange, 404, "text/plain", ("No applicant " + id).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        final byte[] body = bodies.getOrDefault(id, new byte[0]);
+        respond(exchange, 200, applicant.getMimetype() != null ? applicant.getMimetype() : "application/octet-stream",
+                body);
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String contentType, byte[] entity)
+            throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        if (entity == null || entity.length == 0) {
+            exchange.sendResponseHeaders(statusCode, -1);
+        } else {
+            exchange.sendResponseHeaders(statusCode, entity.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(entity);
+            }
+        }
+        exchange.close();
+    }
+
+    private static Map<String, List<String>> queryParams(URI uri) {
+        final String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Map<String, List<String>> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            final int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.computeIfAbsent(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        name -> new ArrayList<>())
+                        .add(URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        final List<String> values = params.get(name);
+        return values == null ? null : values.get(0);
+    }
+}
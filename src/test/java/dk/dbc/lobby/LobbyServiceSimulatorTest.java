@@ -0,0 +1,218 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import jakarta.ws.rs.ProcessingException;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the lobby service simulator against the connector, and runs a short
+ * mixed load with injected faults through it
+ * <p>
+ * The load can be turned into a soak test by setting the system properties
+ * {@code lobby.load.duration} (ISO-8601, default PT2S) and
+ * {@code lobby.load.threads} (default 16).
+ * </p>
+ */
+class LobbyServiceSimulatorTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LobbyServiceSimulatorTest.class);
+
+    private LobbyServiceSimulator simulator;
+    private DefaultLobbyConnectorMetrics metrics;
+    private LobbyConnector connector;
+
+    @BeforeEach
+    void setup() throws IOException {
+        simulator = new LobbyServiceSimulator();
+        metrics = new DefaultLobbyConnectorMetrics();
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig().register(new JacksonFeature())),
+                simulator.getBaseUrl(), LobbyConnector.TimingLogLevel.TRACE, metrics, new RetryConfig()
+                        .withMaxRetries(3)
+                        .withInitialDelay(Duration.ofMillis(5))
+                        .withMaxDelay(Duration.ofMillis(50))
+                        .withCircuitBreakerEnabled(false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connector.close();
+        simulator.close();
+    }
+
+    @Test
+    void listingIsFilteredAndPaged() throws LobbyConnectorException {
+        simulator.populate(25, 0);
+        final Applicant accepted = ApplicantFixtures.newApplicant(7, 0);
+        accepted.setState(ApplicantState.ACCEPTED);
+        connector.createOrReplaceApplicant(accepted);
+
+        final LobbyConnector.Params pending = new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING);
+        assertThat("pending", connector.getApplicants(pending).length, is(24));
+
+        final List<String> ids = new ArrayList<>();
+        try (PagedApplicantIterator iterator = connector.iterateApplicants(pending, 10)) {
+            iterator.forEachRemaining(applicant -> ids.add(applicant.getId()));
+        }
+        assertThat("paged", ids.size(), is(24));
+        assertThat("distinct", ids.stream().distinct().count(), is(24L));
+    }
+
+    @Test
+    void applicantBodyIsStored() throws LobbyConnectorException {
+        final Applicant applicant = ApplicantFixtures.newApplicant(1, 512);
+        final byte[] body = applicant.getBody();
+        connector.createOrReplaceApplicant(applicant);
+
+        assertThat("stored without body", simulator.getApplicant("applicant-1").getBody() == null, is(true));
+        final Applicant listed = connector.getApplicants(new LobbyConnector.Params().withCategory("dpf"))[0];
+        assertThat("body", connector.fetchBody(listed), is(body));
+        assertThrows(LobbyConnectorNotFoundException.class, () -> connector.getApplicantBody("unknown"));
+    }
+
+    @Test
+    void applicantStateIsChanged() throws LobbyConnectorException {
+        simulator.populate(3, 0);
+
+        final List<ApplicantResult> results = connector.changeApplicantStates(
+                List.of("applicant-0", "applicant-1", "unknown"), ApplicantState.ACCEPTED);
+
+        assertThat("changed", simulator.getApplicant("applicant-1").getState(), is(ApplicantState.ACCEPTED));
+        assertThat("unchanged", simulator.getApplicant("applicant-2").getState(), is(ApplicantState.PENDING));
+        assertThat("ok", results.get(0).getOutcome(), is(ApplicantResult.Outcome.OK));
+        assertThat("gone", results.get(2).getException() instanceof LobbyConnectorGoneException, is(true));
+    }
+
+    @Test
+    void severalCategoriesAndStatesAreFannedOut() throws LobbyConnectorException {
+        for (int i = 0; i < 12; i++) {
+            final Applicant applicant = ApplicantFixtures.newApplicant(i, 0);
+            applicant.setCategory("category-" + i % 3);
+            applicant.setState(i % 2 == 0 ? ApplicantState.PENDING : ApplicantState.ACCEPTED);
+            connector.createOrReplaceApplicant(applicant);
+        }
+        final Duration latency = Duration.ofMillis(200);
+        simulator.withLatency(LobbyServiceSimulator.LatencyDistribution.fixed(latency));
+        final LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategories(List.of("category-0", "category-1"))
+                .withStates(Set.of(LobbyConnector.Params.State.PENDING, LobbyConnector.Params.State.ACCEPTED));
+
+        final long requests = simulator.getRequests();
+        final long startNanos = System.nanoTime();
+        final Applicant[] applicants = connector.getApplicants(params);
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        assertThat("applicants", applicants.length, is(8));
+        assertThat("requests", simulator.getRequests() - requests, is(4L));
+        assertThat("close to a single listing", elapsed.compareTo(latency.multipliedBy(3)) < 0, is(true));
+
+        try (Stream<Applicant> stream = connector.streamApplicants(params)) {
+            assertThat("streamed", stream.map(Applicant::getId).distinct().count(), is(8L));
+        }
+
+        simulator.withLatency(LobbyServiceSimulator.LatencyDistribution.none());
+        connector.withMultiValuedQueries(true);
+        final long multiValuedRequests = simulator.getRequests();
+        assertThat("multi-valued query", connector.getApplicants(params).length, is(8));
+        assertThat("single request", simulator.getRequests() - multiValuedRequests, is(1L));
+    }
+
+    @Test
+    void batchHelpersShareBoundedWorkers() throws LobbyConnectorException, InterruptedException {
+        final Set<Thread> before = workerThreads();
+        final Duration latency = Duration.ofMillis(100);
+        simulator.withLatency(LobbyServiceSimulator.LatencyDistribution.fixed(latency));
+
+        final long startNanos = System.nanoTime();
+        final List<ApplicantResult> results = connector.createOrReplaceApplicants(
+                List.of(ApplicantFixtures.newApplicants(8, 0)), 2);
+        final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        assertThat("results", results.stream().allMatch(ApplicantResult::isOk), is(true));
+        assertThat("at most two requests at a time", elapsed.compareTo(latency.multipliedBy(4)) >= 0, is(true));
+
+        connector.changeApplicantStates(List.of("applicant-0", "applicant-1"), ApplicantState.ACCEPTED, 2);
+        final Set<Thread> workers = workerThreads();
+        workers.removeAll(before);
+        assertThat("workers", workers.isEmpty(), is(false));
+
+        connector.close();
+        for (Thread worker : workers) {
+            worker.join(5000);
+            assertThat(worker.getName() + " stopped by close()", worker.isAlive(), is(false));
+        }
+    }
+
+    private static Set<Thread> workerThreads() {
+        final Set<Thread> workers = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("lobby-connector-worker")) {
+                workers.add(thread);
+            }
+        }
+        return workers;
+    }
+
+    @Test
+    void injectedFaults() throws LobbyConnectorException {
+        simulator.withFault(LobbyServiceSimulator.Fault.GONE, 1);
+        assertThrows(LobbyConnectorGoneException.class,
+                () -> connector.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0)));
+
+        simulator.withFault(LobbyServiceSimulator.Fault.GONE, 0)
+                .withFault(LobbyServiceSimulator.Fault.CONNECTION_RESET, 1);
+        assertThrows(ProcessingException.class, () -> connector.getApplicants(new LobbyConnector.Params()));
+        assertThat("retries", metrics.getRetries(), is(3L));
+
+        simulator.withFault(LobbyServiceSimulator.Fault.CONNECTION_RESET, 0);
+        assertThat("recovered", connector.getApplicants(new LobbyConnector.Params()).length, is(0));
+    }
+
+    @Test
+    void mixedLoadWithFaults() throws InterruptedException {
+        simulator.populate(1000, 256);
+        simulator.withLatency(LobbyServiceSimulator.LatencyDistribution.logNormal(Duration.ofMillis(2), 0.5))
+                .withFault(LobbyServiceSimulator.Fault.BAD_GATEWAY, 0.01)
+                .withFault(LobbyServiceSimulator.Fault.CONNECTION_RESET, 0.005);
+        final LobbyConnector.Params params = new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withLimit(100);
+
+        final LobbyLoadDriver.Report report = new LobbyLoadDriver(
+                Integer.getInteger("lobby.load.threads", 16),
+                Duration.parse(System.getProperty("lobby.load.duration", "PT2S")))
+                .run(index -> {
+                    // one write per nine reads
+                    if (index % 10 == 0) {
+                        connector.createOrReplaceApplicant(ApplicantFixtures.newApplicant((int) (index % 1000), 256));
+                    } else {
+                        connector.getApplicants(params);
+                    }
+                });
+        LOGGER.info("Mixed load against simulator: {}, retries={}", report, metrics.getRetries());
+
+        assertThat("calls", report.getCalls(), greaterThan(0L));
+        assertThat("bad gateways were retried", metrics.getRetries(),
+                greaterThanOrEqualTo(simulator.getInjectedFaults(LobbyServiceSimulator.Fault.BAD_GATEWAY)));
+        assertThat("failures", report.getFailures(), lessThan(Math.max(1, report.getCalls() / 100)));
+    }
+}
@@ -0,0 +1,213 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Minimal in-process lobby service answering every listing with the same
+ * pre-serialized applicants and accepting every PUT, used by benchmarks to
+ * measure connector overhead without network or server noise
+ * <p>
+ * Listings are answered in Smile if asked for and gzip encoded if accepted,
+ * and PUTs are accepted as JSON or Smile, optionally gzip encoded. The
+ * binary format can be switched off to act as a JSON-only lobby service.
+ * </p>
+ */
+final class LobbyStubServer implements AutoCloseable {
+    static final String SMILE = WireFormat.SMILE.getMediaType().toString();
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile byte[] listing = "[]".getBytes();
+    private volatile byte[] smileListing = listing;
+    private volatile boolean binaryFormatEnabled = true;
+    private final AtomicInteger smilePuts = new AtomicInteger();
+    private final AtomicInteger jsonPuts = new AtomicInteger();
+    private final AtomicInteger gzipResponses = new AtomicInteger();
+    private final AtomicInteger gzipRequests = new AtomicInteger();
+    private volatile byte[] lastPut;
+    private volatile String refusedId;
+    private final AtomicInteger refusedPuts = new AtomicInteger();
+    private volatile long responseDelayMillis;
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+
+    LobbyStubServer() throws IOException {
+        this(Executors.newFixedThreadPool(8));
+    }
+
+    /**
+     * @param executor executor handling requests, shut down on close
+     */
+    LobbyStubServer(ExecutorService executor) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        this.executor = executor;
+        server.setExecutor(executor);
+        server.createContext("/v1/api/applicants", this::handle);
+        server.start();
+    }
+
+    String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    void setListing(Applicant[] applicants) {
+        listing = ApplicantFixtures.toJson(applicants);
+        try {
+            smileListing = SMILE_MAPPER.writeValueAsBytes(applicants);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    void setBinaryFormatEnabled(boolean binaryFormatEnabled) {
+        this.binaryFormatEnabled = binaryFormatEnabled;
+    }
+
+    int getSmilePuts() {
+        return smilePuts.get();
+    }
+
+    int getJsonPuts() {
+        return jsonPuts.get();
+    }
+
+    int getGzipResponses() {
+        return gzipResponses.get();
+    }
+
+    int getGzipRequests() {
+        return gzipRequests.get();
+    }
+
+    /**
+     * @param responseDelay time to wait before answering each request
+     */
+    void setResponseDelay(Duration responseDelay) {
+        responseDelayMillis = responseDelay.toMillis();
+    }
+
+    /**
+     * @return highest number of requests handled at the same time
+     */
+    int getMaxRequestsInFlight() {
+        return maxRequestsInFlight.get();
+    }
+
+    /**
+     * @param refusedId id of an applicant whose PUTs are always answered
+     *                  by a 404 with a JSON entity, as from the lobby service
+     */
+    void setRefusedId(String refusedId) {
+        this.refusedId = refusedId;
+    }
+
+    int getRefusedPuts() {
+        return refusedPuts.get();
+    }
+
+    /**
+     * @return decoded entity of the last accepted PUT
+     */
+    byte[] getLastPut() {
+        return lastPut;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxRequestsInFlight.accumulateAndGet(requestsInFlight.incrementAndGet(), Math::max);
+        try {
+            if (responseDelayMillis > 0) {
+                Thread.sleep(responseDelayMillis);
+            }
+            respond(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } finally {
+            requestsInFlight.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        final byte[] request;
+        try (InputStream requestBody = isGzipped(exchange)
+                ? new GZIPInputStream(exchange.getRequestBody())
+                : exchange.getRequestBody()) {
+            request = requestBody.readAllBytes();
+        }
+        if ("PUT".equals(exchange.getRequestMethod())
+                && exchange.getRequestURI().getPath().endsWith("/" + refusedId)) {
+            refusedPuts.incrementAndGet();
+            final byte[] response = "{\"message\":\"no such applicant\"}".getBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(404, response.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(response);
+            }
+            return;
+        }
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith(SMILE)) {
+                if (!binaryFormatEnabled) {
+                    exchange.sendResponseHeaders(415, -1);
+                    exchange.close();
+                    return;
+                }
+                smilePuts.incrementAndGet();
+            } else {
+                jsonPuts.incrementAndGet();
+            }
+            lastPut = request;
+            exchange.sendResponseHeaders(201, -1);
+        } else {
+            final String accept = exchange.getRequestHeaders().getFirst("Accept");
+            final boolean smile = binaryFormatEnabled && accept != null && accept.contains(SMILE);
+            final byte[] response = smile ? smileListing : listing;
+            exchange.getResponseHeaders().set("Content-Type", smile ? SMILE : "application/json");
+            final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                gzipResponses.incrementAndGet();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream responseBody = new GZIPOutputStream(exchange.getResponseBody())) {
+                    responseBody.write(response);
+                }
+            } else {
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(response);
+                }
+            }
+        }
+        exchange.close();
+    }
+
+    private boolean isGzipped(HttpExchange exchange) {
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            gzipRequests.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package dk.dbc.lobby;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PagedApplicantIteratorTest {
+
+    private static WireMockServer wireMockServer;
+    private static LobbyConnector connector;
+
+    @BeforeAll
+    static void startWireMockServer() {
+        wireMockServer = new WireMockServer(options().dynamicPort()
+                .dynamicHttpsPort());
+        wireMockServer.start();
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig()
+                .register(new JacksonFeature())), "http://localhost:" + wireMockServer.port());
+    }
+
+    @AfterAll
+    static void stopWireMockServer() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    void iteratesPagesByOffset() {
+        stubPage("offset", "0", "[" + applicantJson("offset-1") + "," + applicantJson("offset-2") + "]");
+        stubPage("offset", "2", "[" + applicantJson("offset-3") + "," + applicantJson("offset-4") + "]");
+        stubPage("offset", "4", "[" + applicantJson("offset-5") + "]");
+
+        final List<String> ids = new ArrayList<>();
+        try (PagedApplicantIterator applicants = connector.iterateApplicants(
+                new LobbyConnector.Params().withCategory("offset").withOffset(0), 2)) {
+            applicants.forEachRemaining(applicant -> ids.add(applicant.getId()));
+            assertThat("pages", applicants.getPageCount(), is(3));
+        }
+
+        assertThat(ids, is(List.of("offset-1", "offset-2", "offset-3", "offset-4", "offset-5")));
+    }
+
+    @Test
+    void iteratesPagesByCursor() {
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("cursor"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader(LobbyConnector.HEADER_NEXT_CURSOR, "c2")
+                        .withBody("[" + applicantJson("cursor-1") + "]")));
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("cursor"))
+                .withQueryParam("cursor", equalTo("c2"))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[" + applicantJson("cursor-2") + "]")));
+
+        final List<String> ids = new ArrayList<>();
+        try (PagedApplicantIterator applicants = connector.iterateApplicants(
+                new LobbyConnector.Params().withCategory("cursor"), 100)) {
+            applicants.forEachRemaining(applicant -> ids.add(applicant.getId()));
+        }
+
+        assertThat(ids, is(List.of("cursor-1", "cursor-2")));
+    }
+
+    @Test
+    void failedPageIsFetchedAgain() {
+        stubPage("failing", "0", "[" + applicantJson("failing-1") + "]");
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("failing"))
+                .withQueryParam("offset", equalTo("1"))
+                .inScenario("failing page")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("recovered")
+                .willReturn(aResponse().withStatus(400)));
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("failing"))
+                .withQueryParam("offset", equalTo("1"))
+                .inScenario("failing page")
+                .whenScenarioStateIs("recovered")
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[]")));
+
+        try (PagedApplicantIterator applicants = connector.iterateApplicants(
+                new LobbyConnector.Params().withCategory("failing").withOffset(0), 1)) {
+            assertThat(applicants.next().getId(), is("failing-1"));
+            final UncheckedLobbyConnectorException e = assertThrows(UncheckedLobbyConnectorException.class,
+                    applicants::hasNext);
+            assertThat(e.getCause() instanceof LobbyConnectorUnexpectedStatusCodeException, is(true));
+            assertThat("resumed", applicants.hasNext(), is(false));
+        }
+
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("failing"))
+                .withQueryParam("offset", equalTo("0")));
+    }
+
+    @Test
+    void stopsWhenLimitIsIgnored() {
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("unlimited"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[" + applicantJson("unlimited-1") + "," + applicantJson("unlimited-2") + ","
+                                + applicantJson("unlimited-3") + "]")));
+
+        final List<String> ids = new ArrayList<>();
+        try (PagedApplicantIterator applicants = connector.iterateApplicants(
+                new LobbyConnector.Params().withCategory("unlimited"), 2)) {
+            applicants.forEachRemaining(applicant -> ids.add(applicant.getId()));
+            assertThat("pages", applicants.getPageCount(), is(1));
+        }
+
+        assertThat(ids, is(List.of("unlimited-1", "unlimited-2", "unlimited-3")));
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("unlimited")));
+    }
+
+    @Test
+    void stopsWhenOffsetIsIgnored() {
+        // answers every page with the same applicants, whatever the limit and offset
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("unpaged"))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[" + applicantJson("unpaged-1") + "," + applicantJson("unpaged-2") + "]")));
+
+        final List<String> ids = new ArrayList<>();
+        try (PagedApplicantIterator applicants = connector.iterateApplicants(
+                new LobbyConnector.Params().withCategory("unpaged"), 2)) {
+            applicants.forEachRemaining(applicant -> ids.add(applicant.getId()));
+            assertThat("pages", applicants.getPageCount(), is(1));
+        }
+
+        assertThat(ids, is(List.of("unpaged-1", "unpaged-2")));
+        wireMockServer.verify(2, getRequestedFor(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo("unpaged")));
+    }
+
+    private static void stubPage(String category, String offset, String body) {
+        wireMockServer.stubFor(get(urlPathEqualTo("/v1/api/applicants"))
+                .withQueryParam("category", equalTo(category))
+                .withQueryParam("offset", equalTo(offset))
+                .willReturn(aResponse().withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(body)));
+    }
+
+    private static String applicantJson(String id) {
+        return "{\"id\":\"" + id + "\",\"category\":\"paged\",\"state\":\"PENDING\"}";
+    }
+}
@@ -0,0 +1,136 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import dk.dbc.httpclient.HttpGet;
+import dk.dbc.httpclient.PathBuilder;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares the heap allocated per call when building listing requests and
+ * body links the way {@link LobbyConnector} used to, resolving the base URL
+ * and formatting paths on every call, with the targets and body link prefix
+ * it now resolves once
+ * <p>
+ * Each invocation makes a batch of calls, measuring the bytes allocated by the
+ * benchmark thread, and reports them per call in the
+ * {@code allocatedBytesPerCall} counter. Counters of several measurement
+ * iterations would be summed, so there is only one.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 1)
+@Fork(1)
+public class RequestAllocationBenchmark {
+    private static final int CALLS = 100_000;
+    private static final String BASE_URL = "http://lobby.example.com:8080";
+
+    private Client client;
+    private HttpClient httpClient;
+    private LobbyConnector connector;
+    private LobbyConnector.Params params;
+    private Applicant applicant;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Allocation {
+        public long allocatedBytesPerCall;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        client = HttpClient.newClient(new ClientConfig().register(new JacksonFeature()));
+        httpClient = HttpClient.create(client);
+        connector = new LobbyConnector(client, BASE_URL, LobbyConnector.TimingLogLevel.TRACE);
+        params = new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING);
+        applicant = ApplicantFixtures.newApplicant(0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connector.close();
+    }
+
+    @Benchmark
+    public void listingRequestResolvedPerCall(Allocation allocation, Blackhole blackhole) {
+        measure(allocation, blackhole, bh -> {
+            final HttpGet httpGet = new HttpGet(httpClient)
+                    .withBaseUrl(BASE_URL)
+                    .withPathElements(new PathBuilder(LobbyConnector.PATH_GET_APPLICANTS).build());
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                httpGet.withQueryParameter(param.getKey(), param.getValue());
+            }
+            // as resolved by the http client when the request is executed
+            WebTarget target = client.target(httpGet.getBaseUrl());
+            for (String pathElement : httpGet.getPathElements()) {
+                target = target.path(pathElement);
+            }
+            for (Map.Entry<String, Object> param : httpGet.getQueryParameters().entrySet()) {
+                target = target.queryParam(param.getKey(), param.getValue());
+            }
+            bh.consume(target.request());
+        });
+    }
+
+    @Benchmark
+    public void listingRequestPrecomputed(Allocation allocation, Blackhole blackhole) {
+        measure(allocation, blackhole, bh -> {
+            final Invocation.Builder request = connector.newListingRequest(params).getTarget().request();
+            bh.consume(request);
+        });
+    }
+
+    @Benchmark
+    public void bodyLinkFormatted(Allocation allocation, Blackhole blackhole) {
+        measure(allocation, blackhole, bh -> bh.consume(
+                BASE_URL + String.format("/v1/api/applicants/%s/body", applicant.getId())));
+    }
+
+    @Benchmark
+    public void bodyLinkPrecomputed(Allocation allocation, Blackhole blackhole) {
+        measure(allocation, blackhole, bh -> {
+            connector.constructBodyLink(applicant);
+            bh.consume(applicant.getBodyLink());
+        });
+    }
+
+    private static void measure(Allocation allocation, Blackhole blackhole, Consumer<Blackhole> call) {
+        final long before = allocatedBytes();
+        for (int i = 0; i < CALLS; i++) {
+            call.accept(blackhole);
+        }
+        allocation.allocatedBytesPerCall = (allocatedBytes() - before) / CALLS;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,177 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestCoalescerTest {
+    private static final int CALLERS = 8;
+
+    private final LobbyConnector.Params params = new LobbyConnector.Params()
+            .withCategory("dpf")
+            .withState(LobbyConnector.Params.State.PENDING);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void concurrentIdenticalCallsShareOneLoad() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Applicant[] listing = ApplicantFixtures.newApplicants(3, 0);
+        final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            final List<Future<Applicant[]>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> coalescer.get(params, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return listing;
+                })));
+            }
+            awaitCoalesced(coalescer, CALLERS - 1);
+            release.countDown();
+
+            for (Future<Applicant[]> result : results) {
+                final Applicant[] applicants = result.get(10, TimeUnit.SECONDS);
+                assertThat(applicants, is(not(sameInstance(listing))));
+                assertThat(applicants[2], is(sameInstance(listing[2])));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat("loads", loads.get(), is(1));
+        assertThat("issued", coalescer.getIssued(), is(1L));
+        assertThat("coalesced", coalescer.getCoalesced(), is((long) CALLERS - 1));
+    }
+
+    @Test
+    void failureIsSharedAndNotCached() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMinutes(1));
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Future<Applicant[]>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> coalescer.get(params, () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    throw new LobbyConnectorException("lobby down");
+                })));
+            }
+            awaitCoalesced(coalescer, 1);
+            release.countDown();
+
+            for (Future<Applicant[]> result : results) {
+                final Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+                assertThat(e.getCause() instanceof LobbyConnectorException, is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        coalescer.get(params, this::load);
+        assertThat("loads", loads.get(), is(2));
+    }
+
+    @Test
+    void completedListingsAreCachedUntilInvalidated() throws LobbyConnectorException {
+        final RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMinutes(1));
+
+        coalescer.get(params, this::load);
+        coalescer.get(new LobbyConnector.Params()
+                .withState(LobbyConnector.Params.State.PENDING)
+                .withCategory("dpf"), this::load);
+        assertThat("cache hits", coalescer.getCacheHits(), is(1L));
+
+        coalescer.get(new LobbyConnector.Params().withCategory("other"), this::load);
+        coalescer.invalidate();
+        coalescer.get(params, this::load);
+
+        assertThat("loads", loads.get(), is(3));
+        assertThat("issued", coalescer.getIssued(), is(3L));
+    }
+
+    @Test
+    void listingInFlightWhenInvalidatedIsNotCached() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMinutes(1));
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Applicant[]> stale = executor.submit(() -> coalescer.get(params, () -> {
+                loading.countDown();
+                await(release);
+                return load();
+            }));
+            await(loading);
+            coalescer.invalidate();
+            coalescer.get(params, this::load);
+            release.countDown();
+            stale.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        coalescer.get(params, this::load);
+        assertThat("loads", loads.get(), is(2));
+        assertThat("coalesced", coalescer.getCoalesced(), is(0L));
+        assertThat("cache hits", coalescer.getCacheHits(), is(1L));
+    }
+
+    @Test
+    void createOrReplaceApplicantInvalidatesCache() throws Exception {
+        try (LobbyStubServer server = new LobbyStubServer()) {
+            server.setListing(ApplicantFixtures.newApplicants(2, 0));
+            final RequestCoalescer coalescer = new RequestCoalescer(Duration.ofMinutes(1));
+            final LobbyConnector connector = new LobbyConnector(
+                    HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), server.getBaseUrl())
+                    .withRequestCoalescer(coalescer);
+
+            connector.getApplicants(params);
+            connector.getApplicants(params);
+            server.setListing(ApplicantFixtures.newApplicants(3, 0));
+            connector.createOrReplaceApplicant(ApplicantFixtures.newApplicant(2, 0));
+
+            assertThat(connector.getApplicants(params).length, is(3));
+            assertThat("cache hits", coalescer.getCacheHits(), is(1L));
+            assertThat("issued", coalescer.getIssued(), is(2L));
+            connector.close();
+        }
+    }
+
+    private Applicant[] load() {
+        loads.incrementAndGet();
+        return ApplicantFixtures.newApplicants(1, 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitCoalesced(RequestCoalescer coalescer, int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalescer.getCoalesced() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestLimiterTest {
+    @Test
+    void rateLimit() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withRequestsPerSecond(50)
+                .withBurst(2));
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < 12; i++) {
+            limiter.acquire().release(0, false);
+        }
+        // two requests pass at once, the remaining ten at 20 ms intervals
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), greaterThanOrEqualTo(190L));
+    }
+
+    @Test
+    void rateLimitRejectsWhenWaitWouldBeTooLong() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withRequestsPerSecond(1)
+                .withMaxWait(Duration.ofMillis(100)));
+        limiter.acquire().release(0, false);
+        assertThrows(RequestRejectedException.class, limiter::acquire);
+    }
+
+    @Test
+    void concurrencyLimit() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withAdaptiveConcurrency(true)
+                .withInitialConcurrency(2)
+                .withMaxWait(Duration.ofMillis(50)));
+        final RequestLimiter.Permit first = limiter.acquire();
+        limiter.acquire();
+        assertThat("in flight", limiter.getInFlight(), is(2));
+        assertThrows(RequestRejectedException.class, limiter::acquire);
+
+        first.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        limiter.acquire();
+        assertThat("in flight", limiter.getInFlight(), is(2));
+    }
+
+    @Test
+    void concurrencyLimitAdapts() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withAdaptiveConcurrency(true)
+                .withInitialConcurrency(10)
+                .withMinConcurrency(2)
+                .withBackoffRatio(0.5));
+        final long latencyNanos = TimeUnit.MILLISECONDS.toNanos(10);
+
+        limiter.acquire().release(latencyNanos, true);
+        assertThat("halved on overload", limiter.getConcurrencyLimit(), is(5));
+        limiter.acquire().release(latencyNanos, true);
+        limiter.acquire().release(latencyNanos, true);
+        assertThat("bounded by minimum", limiter.getConcurrencyLimit(), is(2));
+
+        for (int i = 0; i < 20; i++) {
+            final RequestLimiter.Permit first = limiter.acquire();
+            limiter.acquire().release(latencyNanos, false);
+            first.release(latencyNanos, false);
+        }
+        assertThat("grown while in use", limiter.getConcurrencyLimit(), is(4));
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire().release(latencyNanos * 20, false);
+        }
+        assertThat("cut on rising latency", limiter.getConcurrencyLimit(), is(2));
+    }
+
+    @Test
+    void overloadBurstBacksOffOnce() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withAdaptiveConcurrency(true)
+                .withInitialConcurrency(100)
+                .withMaxConcurrency(100)
+                .withBackoffRatio(0.9));
+        final long latencyNanos = TimeUnit.MILLISECONDS.toNanos(10);
+        final List<RequestLimiter.Permit> burst = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            burst.add(limiter.acquire());
+        }
+
+        burst.get(0).release(latencyNanos, true);
+        final RequestLimiter.Permit later = limiter.acquire();
+        for (RequestLimiter.Permit permit : burst.subList(1, burst.size())) {
+            permit.release(latencyNanos, true);
+        }
+        assertThat("cut once for requests in flight", limiter.getConcurrencyLimit(), is(90));
+
+        later.release(latencyNanos, true);
+        assertThat("cut again for requests made after", limiter.getConcurrencyLimit(), is(81));
+    }
+
+    @Test
+    void releaseWithoutLatencySample() {
+        final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                .withAdaptiveConcurrency(true)
+                .withInitialConcurrency(10)
+                .withBackoffRatio(0.5));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.acquire().release(false);
+        }
+        assertThat("kept without overload", limiter.getConcurrencyLimit(), is(10));
+        limiter.acquire().release(true);
+        assertThat("cut on overload", limiter.getConcurrencyLimit(), is(5));
+    }
+
+    @Test
+    void connectorRequestsPassLimiter() throws Exception {
+        try (LobbyStubServer server = new LobbyStubServer()) {
+            server.setListing(ApplicantFixtures.newApplicants(2, 0));
+            final DefaultLobbyConnectorMetrics metrics = new DefaultLobbyConnectorMetrics();
+            final LobbyConnector connector = new LobbyConnector(
+                    HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), server.getBaseUrl(),
+                    LobbyConnector.TimingLogLevel.TRACE, metrics)
+                    .withRequestLimiter(new RequestLimiter(new LimiterConfig()
+                            .withRequestsPerSecond(1)
+                            .withAdaptiveConcurrency(true)
+                            .withMaxWait(Duration.ofMillis(100))));
+            final LobbyConnector.Params params = new LobbyConnector.Params().withCategory("dpf");
+
+            connector.getApplicants(params);
+            assertThrows(RequestRejectedException.class, () -> connector.getApplicants(params));
+
+            assertThat("limiter waits", metrics.getLimiterWaits().getCount(), is(1L));
+            assertThat("limiter rejections", metrics.getLimiterRejections(), is(1L));
+            assertThat("retries", metrics.getRetries(), is(0L));
+            assertThat("concurrency limit", metrics.getConcurrencyLimit().orElse(0), is(20));
+            connector.close();
+        }
+    }
+
+    @Test
+    void streamingUploadPassesLimiter() throws Exception {
+        try (LobbyStubServer server = new LobbyStubServer()) {
+            final RequestLimiter limiter = new RequestLimiter(new LimiterConfig()
+                    .withAdaptiveConcurrency(true)
+                    .withInitialConcurrency(1)
+                    .withMaxConcurrency(1)
+                    .withMaxWait(Duration.ofMillis(50)));
+            final LobbyConnector connector = new LobbyConnector(
+                    HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), server.getBaseUrl())
+                    .withRequestLimiter(limiter);
+            final Applicant applicant = ApplicantFixtures.newApplicant(0, 0);
+
+            final RequestLimiter.Permit permit = limiter.acquire();
+            assertThrows(RequestRejectedException.class, () -> connector.createOrReplaceApplicant(applicant,
+                    new ByteArrayInputStream("streamed body".getBytes(StandardCharsets.UTF_8))));
+
+            permit.release(0, false);
+            connector.createOrReplaceApplicant(applicant,
+                    new ByteArrayInputStream("streamed body".getBytes(StandardCharsets.UTF_8)));
+            assertThat("in flight", limiter.getInFlight(), is(0));
+            connector.close();
+        }
+    }
+}
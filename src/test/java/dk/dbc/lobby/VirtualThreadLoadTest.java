@@ -0,0 +1,68 @@
+/*
+ * Copyright Dansk Bibliotekscenter a/s. Licensed under GPLv3
+ * See license text in LICENSE.txt or at https://opensource.dbc.dk/licenses/gpl-3.0/
+ */
+
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs thousands of concurrent blocking lobby calls on virtual threads
+ * against a slow in-process lobby service, checking that all calls
+ * complete and that they actually overlap
+ */
+class VirtualThreadLoadTest {
+    private static final int CALLS = 2000;
+    private static final Duration RESPONSE_DELAY = Duration.ofMillis(200);
+
+    private LobbyStubServer server;
+    private LobbyConnector connector;
+
+    @BeforeEach
+    void setup() throws IOException {
+        assumeTrue(ExecutionMode.VIRTUAL_THREADS.isSupported(), "virtual threads require Java 21");
+        server = new LobbyStubServer(Executors.newCachedThreadPool(
+                ExecutionMode.VIRTUAL_THREADS.newThreadFactory("lobby-stub")));
+        server.setResponseDelay(RESPONSE_DELAY);
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig().register(new JacksonFeature())),
+                server.getBaseUrl(), LobbyConnector.TimingLogLevel.TRACE)
+                .withExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (connector != null) {
+            connector.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void thousandsOfConcurrentCalls() throws LobbyConnectorException {
+        final List<ApplicantResult> results = connector.createOrReplaceApplicants(
+                Arrays.asList(ApplicantFixtures.newApplicants(CALLS, 256)), CALLS);
+
+        assertThat("completed", results.size(), is(CALLS));
+        assertThat("all succeeded", results.stream().allMatch(ApplicantResult::isOk), is(true));
+        assertThat("requests in flight at once", server.getMaxRequestsInFlight(), greaterThan(CALLS / 2));
+    }
+}
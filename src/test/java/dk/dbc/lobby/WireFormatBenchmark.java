@@ -0,0 +1,86 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares JSON and Smile, with and without compression, end-to-end
+ * against an in-process {@link LobbyStubServer}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+    @Param({"JSON", "SMILE"})
+    public WireFormat wireFormat;
+
+    @Param({"false", "true"})
+    public boolean compression;
+
+    @Param({"1000"})
+    public int applicants;
+
+    @Param({"4096"})
+    public int bodySize;
+
+    private LobbyStubServer server;
+    private LobbyConnector connector;
+    private LobbyConnector.Params params;
+    private Applicant applicant;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, LobbyConnectorException {
+        server = new LobbyStubServer();
+        server.setListing(ApplicantFixtures.newApplicants(applicants, bodySize));
+        final ClientConfig clientConfig = new ClientConfig()
+                .register(new JacksonFeature());
+        if (compression) {
+            clientConfig.register(new CompressionFeature(true));
+        }
+        connector = new LobbyConnector(HttpClient.newClient(clientConfig), server.getBaseUrl(),
+                LobbyConnector.TimingLogLevel.TRACE)
+                .withWireFormat(wireFormat);
+        params = new LobbyConnector.Params()
+                .withCategory("dpf")
+                .withState(LobbyConnector.Params.State.PENDING);
+        applicant = ApplicantFixtures.newApplicant(0, bodySize);
+        // lets the connector learn whether the stub speaks the binary format
+        connector.getApplicants(params);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connector.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Applicant[] getApplicants() throws LobbyConnectorException {
+        return connector.getApplicants(params);
+    }
+
+    @Benchmark
+    public void createOrReplaceApplicant() throws LobbyConnectorException {
+        connector.createOrReplaceApplicant(applicant);
+    }
+}
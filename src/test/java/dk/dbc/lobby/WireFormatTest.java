@@ -0,0 +1,99 @@
+package dk.dbc.lobby;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import dk.dbc.httpclient.HttpClient;
+import jakarta.ws.rs.client.Client;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class WireFormatTest {
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private LobbyStubServer server;
+    private final LobbyConnector.Params params = new LobbyConnector.Params().withCategory("dpf");
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new LobbyStubServer();
+        server.setListing(ApplicantFixtures.newApplicants(3, 100));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void smileListingAndPut() throws LobbyConnectorException, IOException {
+        final LobbyConnector connector = newConnector(new ClientConfig())
+                .withWireFormat(WireFormat.SMILE);
+
+        final Applicant[] applicants = connector.getApplicants(params);
+        assertThat(applicants.length, is(3));
+        assertThat(applicants[2].getBody(), is(ApplicantFixtures.newApplicant(2, 100).getBody()));
+        assertThat(applicants[2].getBodyLink(), is(server.getBaseUrl() + "/v1/api/applicants/applicant-2/body"));
+
+        connector.createOrReplaceApplicant(applicants[2]);
+        assertThat("smile PUTs", server.getSmilePuts(), is(1));
+        assertThat(SMILE_MAPPER.readValue(server.getLastPut(), Applicant.class).getBody(),
+                is(applicants[2].getBody()));
+    }
+
+    @Test
+    void fallsBackToJson() throws LobbyConnectorException {
+        server.setBinaryFormatEnabled(false);
+        final LobbyConnector connector = newConnector(new ClientConfig())
+                .withWireFormat(WireFormat.SMILE);
+
+        final Applicant[] applicants = connector.getApplicants(params);
+        connector.createOrReplaceApplicant(applicants[0]);
+
+        assertThat(applicants.length, is(3));
+        assertThat("JSON PUTs", server.getJsonPuts(), is(1));
+        assertThat("smile PUTs", server.getSmilePuts(), is(0));
+    }
+
+    @Test
+    void rejectedSmilePutIsRepeatedAsJson() throws LobbyConnectorException {
+        final LobbyConnector connector = newConnector(new ClientConfig())
+                .withWireFormat(WireFormat.SMILE);
+        final Applicant[] applicants = connector.getApplicants(params);
+        server.setBinaryFormatEnabled(false);
+
+        connector.createOrReplaceApplicant(applicants[0]);
+        connector.createOrReplaceApplicant(applicants[1]);
+
+        assertThat("JSON PUTs", server.getJsonPuts(), is(2));
+        assertThat("smile PUTs", server.getSmilePuts(), is(0));
+    }
+
+    @Test
+    void compression() throws LobbyConnectorException, IOException {
+        final LobbyConnector connector = newConnector(new ClientConfig()
+                .register(new CompressionFeature(true)));
+
+        final Applicant[] applicants = connector.getApplicants(params);
+        connector.createOrReplaceApplicant(applicants[1]);
+
+        assertThat(applicants.length, is(3));
+        assertThat("gzip responses", server.getGzipResponses(), is(1));
+        assertThat("gzip requests", server.getGzipRequests(), is(1));
+        assertThat(JSON_MAPPER.readValue(server.getLastPut(), Applicant.class).getBody(),
+                is(applicants[1].getBody()));
+    }
+
+    private LobbyConnector newConnector(ClientConfig clientConfig) {
+        final Client client = HttpClient.newClient(clientConfig.register(new JacksonFeature()));
+        return new LobbyConnector(client, server.getBaseUrl());
+    }
+}
@@ -0,0 +1,120 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteBehindSpoolTest {
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path tempDir;
+
+    private LobbyStubServer server;
+    private Path spoolFile;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = new LobbyStubServer();
+        spoolFile = tempDir.resolve("lobby.spool");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void spooledApplicantsAreSent() throws Exception {
+        try (WriteBehindSpool spool = new WriteBehindSpool(newConnector(server.getBaseUrl()), newConfig())) {
+            for (int i = 0; i < 5; i++) {
+                spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(i, 100));
+            }
+            assertThat("flushed", spool.flush(FLUSH_TIMEOUT), is(true));
+            assertThat("sent", spool.getSent(), is(5L));
+            assertThat("pending", spool.getPendingBytes(), is(0L));
+        }
+        assertThat("PUTs", server.getJsonPuts(), is(5));
+        assertThat("emptied spool size", Files.size(spoolFile), is((long) Long.BYTES));
+    }
+
+    @Test
+    void unsentApplicantsAreReplayedWhenReopened() throws Exception {
+        try (WriteBehindSpool spool = new WriteBehindSpool(newUnreachableConnector(), newConfig())) {
+            for (int i = 0; i < 3; i++) {
+                spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(i, 100));
+            }
+            spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(1, 100));
+            assertThat("flushed", spool.flush(Duration.ofMillis(200)), is(false));
+        }
+        // simulates a crash in the middle of appending a record
+        Files.write(spoolFile, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+        try (WriteBehindSpool spool = new WriteBehindSpool(newConnector(server.getBaseUrl()), newConfig())) {
+            assertThat("flushed", spool.flush(FLUSH_TIMEOUT), is(true));
+            assertThat("sent", spool.getSent(), is(3L));
+        }
+        assertThat("PUTs without duplicates", server.getJsonPuts(), is(3));
+    }
+
+    @Test
+    void fullSpoolHoldsBackWriters() throws Exception {
+        final WriteBehindConfig config = newConfig()
+                .withMaxSpoolBytes(1024)
+                .withMaxWait(Duration.ofMillis(100));
+        try (WriteBehindSpool spool = new WriteBehindSpool(newUnreachableConnector(), config)) {
+            spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 300));
+            assertThrows(LobbyConnectorException.class,
+                    () -> spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(1, 300)));
+            assertThat("spool full waits", spool.getSpoolFullWaits(), is(1L));
+            assertThat("pending", spool.getPendingBytes(), greaterThan(0L));
+        }
+    }
+
+    @Test
+    void applicantsAlwaysRefusedAreDropped() throws Exception {
+        server.setRefusedId("applicant-1");
+        try (WriteBehindSpool spool = new WriteBehindSpool(newConnector(server.getBaseUrl()), newConfig())) {
+            for (int i = 0; i < 3; i++) {
+                spool.createOrReplaceApplicant(ApplicantFixtures.newApplicant(i, 100));
+            }
+            assertThat("flushed", spool.flush(FLUSH_TIMEOUT), is(true));
+            assertThat("sent", spool.getSent(), is(2L));
+            assertThat("dropped", spool.getDropped(), is(1L));
+            assertThat("resent", spool.getResent(), is(0L));
+        }
+        assertThat("refused PUTs", server.getRefusedPuts(), is(1));
+    }
+
+    private WriteBehindConfig newConfig() {
+        return new WriteBehindConfig()
+                .withSpoolFile(spoolFile)
+                .withInitialRetryDelay(Duration.ofMillis(20))
+                .withMaxRetryDelay(Duration.ofMillis(100));
+    }
+
+    private static LobbyConnector newConnector(String baseUrl) {
+        return new LobbyConnector(HttpClient.newClient(new ClientConfig().register(new JacksonFeature())),
+                baseUrl, LobbyConnector.TimingLogLevel.TRACE, LobbyConnectorMetrics.NOOP,
+                new RetryConfig().withMaxRetries(0));
+    }
+
+    private static LobbyConnector newUnreachableConnector() {
+        return newConnector("http://localhost:1");
+    }
+}
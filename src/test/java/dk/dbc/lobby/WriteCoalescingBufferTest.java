@@ -0,0 +1,124 @@
+package dk.dbc.lobby;
+
+import dk.dbc.httpclient.HttpClient;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteCoalescingBufferTest {
+    private static final Duration LONG_WINDOW = Duration.ofMinutes(1);
+
+    private LobbyStubServer server;
+    private DefaultLobbyConnectorMetrics metrics;
+    private LobbyConnector connector;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = new LobbyStubServer();
+        metrics = new DefaultLobbyConnectorMetrics();
+        connector = new LobbyConnector(HttpClient.newClient(new ClientConfig().register(new JacksonFeature())),
+                server.getBaseUrl(), LobbyConnector.TimingLogLevel.TRACE, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connector.close();
+        server.close();
+    }
+
+    @Test
+    void repeatedWritesAreCollapsed() throws LobbyConnectorException {
+        try (WriteCoalescingBuffer buffer = connector.newWriteCoalescingBuffer(LONG_WINDOW, 100)) {
+            for (int i = 0; i < 3; i++) {
+                buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(i, 0));
+            }
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(1, 0));
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(2, 0));
+
+            final List<ApplicantResult> results = buffer.flush();
+            assertThat("results", results.size(), is(3));
+            assertThat("writes", buffer.getWrites(), is(5L));
+            assertThat("collapsed", buffer.getCollapsed(), is(2L));
+            assertThat("sent", buffer.getSent(), is(3L));
+            assertThat("collapsed metric", metrics.getCollapsedWrites(), is(2L));
+        }
+        assertThat("PUTs", server.getJsonPuts(), is(3));
+    }
+
+    @Test
+    void latestVersionIsSent() throws LobbyConnectorException {
+        try (WriteCoalescingBuffer buffer = connector.newWriteCoalescingBuffer(LONG_WINDOW, 100)) {
+            final Applicant latest = ApplicantFixtures.newApplicant(0, 0);
+            latest.setState(ApplicantState.ACCEPTED);
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+            buffer.createOrReplaceApplicant(latest);
+        }
+        assertThat("PUTs", server.getJsonPuts(), is(1));
+        assertThat("latest version", new String(server.getLastPut(), StandardCharsets.UTF_8),
+                containsString("ACCEPTED"));
+    }
+
+    @Test
+    void fullBufferIsSent() throws LobbyConnectorException {
+        try (WriteCoalescingBuffer buffer = connector.newWriteCoalescingBuffer(LONG_WINDOW, 2)) {
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+            assertThat("PUTs before full", server.getJsonPuts(), is(0));
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(1, 0));
+            assertThat("PUTs when full", server.getJsonPuts(), is(2));
+            assertThat("buffered", buffer.size(), is(0));
+        }
+    }
+
+    @Test
+    void bufferIsSentWhenWindowExpires() throws Exception {
+        try (WriteCoalescingBuffer buffer = connector.newWriteCoalescingBuffer(Duration.ofMillis(50), 100)) {
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+            final long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (buffer.getSent() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat("sent", buffer.getSent(), is(1L));
+            assertThat("flushes", buffer.getFlushes(), is(1L));
+        }
+    }
+
+    @Test
+    void bufferIsSentOnClose() throws LobbyConnectorException {
+        final WriteCoalescingBuffer buffer = connector.newWriteCoalescingBuffer(LONG_WINDOW, 100);
+        buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+        buffer.close();
+        assertThat("PUTs", server.getJsonPuts(), is(1));
+        assertThrows(LobbyConnectorException.class,
+                () -> buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(1, 0)));
+    }
+
+    @Test
+    void failuresArePassedToHandler() throws LobbyConnectorException {
+        final LobbyConnector unreachable = new LobbyConnector(
+                HttpClient.newClient(new ClientConfig().register(new JacksonFeature())), "http://localhost:1",
+                LobbyConnector.TimingLogLevel.TRACE, LobbyConnectorMetrics.NOOP,
+                new RetryConfig().withMaxRetries(0));
+        final List<ApplicantResult> failures = new ArrayList<>();
+        try (WriteCoalescingBuffer buffer = unreachable.newWriteCoalescingBuffer(LONG_WINDOW, 100)
+                .withFailureHandler(failures::add)) {
+            buffer.createOrReplaceApplicant(ApplicantFixtures.newApplicant(0, 0));
+        }
+        assertThat("failures", failures.size(), is(1));
+        assertThat("failed id", failures.get(0).getId(), is("applicant-0"));
+        unreachable.close();
+    }
+}